@@ -96,6 +96,11 @@ abstract class AbstractIterator<T> implements Iterator<T> {
         return result;
     }
 
+    protected final void resetIterator() {
+        state = State.NOT_READY;
+        next = null;
+    }
+
     public final T peek() {
         if (!hasNext()) {
             throw new NoSuchElementException();
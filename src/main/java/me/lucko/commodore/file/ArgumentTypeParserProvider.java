@@ -0,0 +1,59 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+import java.util.Set;
+
+/**
+ * Provides an {@link ArgumentTypeParser} for one or more namespaces.
+ *
+ * <p>Providers are discovered using {@link java.util.ServiceLoader} when
+ * {@link CommodoreFileReader.Builder#withDiscoveredArgumentTypeParsers()}
+ * is used, and should be registered in
+ * <code>META-INF/services/me.lucko.commodore.file.ArgumentTypeParserProvider</code>.</p>
+ *
+ * <p>Providers themselves should be cheap to create - the parser is only
+ * created when a file first references one of the provider's namespaces.</p>
+ */
+public interface ArgumentTypeParserProvider {
+
+    /**
+     * Gets the argument type namespaces handled by the provided parser.
+     *
+     * @return the namespaces
+     */
+    Set<String> getNamespaces();
+
+    /**
+     * Creates the parser.
+     *
+     * <p>This is called at most once per reader.</p>
+     *
+     * @return the parser
+     */
+    ArgumentTypeParser createParser();
+
+}
@@ -0,0 +1,55 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+import com.mojang.brigadier.arguments.ArgumentType;
+
+import java.io.IOException;
+
+/**
+ * A writer for {@link ArgumentType}s, the reverse of an {@link ArgumentTypeParser}.
+ */
+public interface ArgumentTypeWriter {
+
+    /**
+     * Gets if this writer supports the given type.
+     *
+     * @param type the argument type
+     * @return if the writer supports the type
+     */
+    boolean canWrite(ArgumentType<?> type);
+
+    /**
+     * Writes an {@link ArgumentType}, in the form read by the corresponding
+     * {@link ArgumentTypeParser}, e.g. <code>brigadier:integer 0 10</code>.
+     *
+     * @param type the argument type
+     * @param out the output to append to
+     * @throws IOException if an error occurs whilst writing
+     */
+    void write(ArgumentType<?> type, Appendable out) throws IOException;
+
+}
@@ -0,0 +1,146 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+import com.mojang.brigadier.arguments.ArgumentType;
+import com.mojang.brigadier.arguments.BoolArgumentType;
+import com.mojang.brigadier.arguments.DoubleArgumentType;
+import com.mojang.brigadier.arguments.FloatArgumentType;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.arguments.LongArgumentType;
+import com.mojang.brigadier.arguments.StringArgumentType;
+
+import java.io.IOException;
+
+/**
+ * An {@link ArgumentTypeWriter} for brigadier argument types.
+ *
+ * @see BrigadierArgumentTypeParser
+ */
+public class BrigadierArgumentTypeWriter implements ArgumentTypeWriter {
+    public static final BrigadierArgumentTypeWriter INSTANCE = new BrigadierArgumentTypeWriter();
+
+    private BrigadierArgumentTypeWriter() {
+
+    }
+
+    @Override
+    public boolean canWrite(ArgumentType<?> type) {
+        return type instanceof BoolArgumentType ||
+                type instanceof StringArgumentType ||
+                type instanceof IntegerArgumentType ||
+                type instanceof LongArgumentType ||
+                type instanceof FloatArgumentType ||
+                type instanceof DoubleArgumentType;
+    }
+
+    @Override
+    public void write(ArgumentType<?> type, Appendable out) throws IOException {
+        if (type instanceof BoolArgumentType) {
+            out.append("brigadier:bool");
+        } else if (type instanceof StringArgumentType) {
+            writeStringArgumentType((StringArgumentType) type, out);
+        } else if (type instanceof IntegerArgumentType) {
+            writeIntegerArgumentType((IntegerArgumentType) type, out);
+        } else if (type instanceof LongArgumentType) {
+            writeLongArgumentType((LongArgumentType) type, out);
+        } else if (type instanceof FloatArgumentType) {
+            writeFloatArgumentType((FloatArgumentType) type, out);
+        } else if (type instanceof DoubleArgumentType) {
+            writeDoubleArgumentType((DoubleArgumentType) type, out);
+        } else {
+            throw new IllegalArgumentException("Unsupported argument type: " + type);
+        }
+    }
+
+    private static void writeStringArgumentType(StringArgumentType type, Appendable out) throws IOException {
+        out.append("brigadier:string ");
+        switch (type.getType()) {
+            case SINGLE_WORD:
+                out.append("single_word");
+                break;
+            case QUOTABLE_PHRASE:
+                out.append("quotable_phrase");
+                break;
+            case GREEDY_PHRASE:
+                out.append("greedy_phrase");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown string type: " + type.getType());
+        }
+    }
+
+    private static void writeIntegerArgumentType(IntegerArgumentType type, Appendable out) throws IOException {
+        out.append("brigadier:integer");
+        int min = type.getMinimum();
+        int max = type.getMaximum();
+        if (min != Integer.MIN_VALUE || max != Integer.MAX_VALUE) {
+            out.append(' ').append(min == Integer.MIN_VALUE ? "min" : Integer.toString(min));
+            if (max != Integer.MAX_VALUE) {
+                out.append(' ').append(Integer.toString(max));
+            }
+        }
+    }
+
+    private static void writeLongArgumentType(LongArgumentType type, Appendable out) throws IOException {
+        out.append("brigadier:long");
+        long min = type.getMinimum();
+        long max = type.getMaximum();
+        if (min != Long.MIN_VALUE || max != Long.MAX_VALUE) {
+            out.append(' ').append(min == Long.MIN_VALUE ? "min" : Long.toString(min));
+            if (max != Long.MAX_VALUE) {
+                out.append(' ').append(Long.toString(max));
+            }
+        }
+    }
+
+    // the parser reads 'min' as Float.MIN_VALUE / Double.MIN_VALUE (the smallest
+    // positive value), so the default lower bounds are always written as numbers
+
+    private static void writeFloatArgumentType(FloatArgumentType type, Appendable out) throws IOException {
+        out.append("brigadier:float");
+        float min = type.getMinimum();
+        float max = type.getMaximum();
+        if (min != -Float.MAX_VALUE || max != Float.MAX_VALUE) {
+            out.append(' ').append(Float.toString(min));
+            if (max != Float.MAX_VALUE) {
+                out.append(' ').append(Float.toString(max));
+            }
+        }
+    }
+
+    private static void writeDoubleArgumentType(DoubleArgumentType type, Appendable out) throws IOException {
+        out.append("brigadier:double");
+        double min = type.getMinimum();
+        double max = type.getMaximum();
+        if (min != -Double.MAX_VALUE || max != Double.MAX_VALUE) {
+            out.append(' ').append(Double.toString(min));
+            if (max != Double.MAX_VALUE) {
+                out.append(' ').append(Double.toString(max));
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+import com.mojang.brigadier.tree.LiteralCommandNode;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The result of parsing a pack of commodore files from an archive.
+ *
+ * @param <S> the command node sender type
+ * @see CommodoreFileReader#parseArchive(java.nio.file.Path)
+ */
+public final class CommandPack<S> {
+    private final Map<String, LiteralCommandNode<S>> commands;
+    private final Map<String, Exception> errors;
+
+    CommandPack(Map<String, LiteralCommandNode<S>> commands, Map<String, Exception> errors) {
+        this.commands = Collections.unmodifiableMap(commands);
+        this.errors = Collections.unmodifiableMap(errors);
+    }
+
+    /**
+     * Gets the commands which were parsed successfully, keyed by the name
+     * of the archive entry they were parsed from.
+     *
+     * @return the parsed commands
+     */
+    public Map<String, LiteralCommandNode<S>> getCommands() {
+        return this.commands;
+    }
+
+    /**
+     * Gets the errors which occurred whilst reading or parsing entries,
+     * keyed by the name of the archive entry.
+     *
+     * @return the errors
+     */
+    public Map<String, Exception> getErrors() {
+        return this.errors;
+    }
+
+    /**
+     * Gets if any entries failed to parse.
+     *
+     * @return if there were errors
+     */
+    public boolean hasErrors() {
+        return !this.errors.isEmpty();
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+import com.mojang.brigadier.tree.LiteralCommandNode;
+
+/**
+ * A parsed commodore file which isn't bound to a command sender type.
+ *
+ * <p>Templates hold the names, argument types, requirements and structure
+ * of the parsed tree, and can be built into a {@link LiteralCommandNode}
+ * for any sender type without reading the file again. Building only copies
+ * the tree - argument type instances and requirement predicates are shared
+ * between all of the nodes built from a template.</p>
+ *
+ * <p>Templates are immutable and safe to use from multiple threads.</p>
+ *
+ * @see CommodoreFileReader#parseTemplate(java.io.Reader)
+ */
+public final class CommandTemplate {
+    private final NodeTemplate root;
+
+    CommandTemplate(NodeTemplate root) {
+        this.root = root;
+    }
+
+    /**
+     * Gets the name of the root command node.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return this.root.getName();
+    }
+
+    /**
+     * Builds a new {@link LiteralCommandNode} from the template.
+     *
+     * @param <S> the command node sender type
+     * @return the command node
+     */
+    public <S> LiteralCommandNode<S> build() {
+        try {
+            return (LiteralCommandNode<S>) this.root.<S>build();
+        } catch (ParseException e) {
+            // redirects are checked when the template is parsed
+            throw new IllegalStateException(e);
+        }
+    }
+}
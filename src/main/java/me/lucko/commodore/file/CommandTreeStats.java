@@ -0,0 +1,413 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+import com.mojang.brigadier.arguments.ArgumentType;
+import com.mojang.brigadier.arguments.BoolArgumentType;
+import com.mojang.brigadier.arguments.DoubleArgumentType;
+import com.mojang.brigadier.arguments.FloatArgumentType;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.arguments.LongArgumentType;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.tree.ArgumentCommandNode;
+import com.mojang.brigadier.tree.CommandNode;
+import com.mojang.brigadier.tree.LiteralCommandNode;
+import com.mojang.brigadier.tree.RootCommandNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Statistics about the size of a command node tree, such as one returned
+ * by {@link CommodoreFileReader}.
+ *
+ * <p>Objects shared within (or between) trees are only counted once. An
+ * argument type or name is counted as a <i>duplicate</i> if it is a separate
+ * instance equivalent to one which has already been counted, i.e. one which
+ * could have been shared instead. Brigadier's argument types are compared
+ * by their type and bounds, as not all of them implement
+ * {@link Object#equals(Object)}.</p>
+ *
+ * <p>The retained size is an estimate, based on the typical layout of the
+ * Brigadier objects on a 64-bit JVM with compressed references. Names are
+ * estimated at two bytes per character, or one byte per character for
+ * Latin-1 names on JVMs with compact strings (Java 9 and later).</p>
+ */
+public final class CommandTreeStats {
+
+    /**
+     * Collects statistics for a single command node tree.
+     *
+     * @param node the root of the tree
+     * @return the statistics
+     */
+    public static CommandTreeStats of(CommandNode<?> node) {
+        Objects.requireNonNull(node, "node");
+        CommandTreeStats stats = new CommandTreeStats(new Seen());
+        stats.visit(node);
+        return stats;
+    }
+
+    /**
+     * Collects statistics for several trees, for example one per file.
+     *
+     * <p>Objects shared between trees are attributed to the first tree (in
+     * iteration order) which references them, so the statistics for each
+     * tree only include what that tree adds to the ones before it.</p>
+     *
+     * @param nodes the trees
+     * @param <K> the key type, e.g. a file name
+     * @return the statistics for each tree, in the same order
+     * @see #sum(Iterable)
+     */
+    public static <K> Map<K, CommandTreeStats> of(Map<K, ? extends CommandNode<?>> nodes) {
+        Objects.requireNonNull(nodes, "nodes");
+        Seen seen = new Seen();
+        Map<K, CommandTreeStats> stats = new LinkedHashMap<>();
+        for (Map.Entry<K, ? extends CommandNode<?>> entry : nodes.entrySet()) {
+            CommandTreeStats treeStats = new CommandTreeStats(seen);
+            treeStats.visit(entry.getValue());
+            stats.put(entry.getKey(), treeStats);
+        }
+        return Collections.unmodifiableMap(stats);
+    }
+
+    /**
+     * Collects statistics for several trees, for example the results of
+     * {@link CommodoreFileReader#parse(Iterable)}.
+     *
+     * @param nodes the trees
+     * @return the statistics for each tree, in the same order
+     * @see #of(Map)
+     */
+    public static List<CommandTreeStats> of(List<? extends CommandNode<?>> nodes) {
+        Objects.requireNonNull(nodes, "nodes");
+        Seen seen = new Seen();
+        List<CommandTreeStats> stats = new ArrayList<>(nodes.size());
+        for (CommandNode<?> node : nodes) {
+            CommandTreeStats treeStats = new CommandTreeStats(seen);
+            treeStats.visit(node);
+            stats.add(treeStats);
+        }
+        return Collections.unmodifiableList(stats);
+    }
+
+    /**
+     * Adds together the statistics for several trees.
+     *
+     * <p>This is only accurate for statistics collected together using
+     * {@link #of(Map)} or {@link #of(List)}, as otherwise shared objects
+     * will be counted more than once.</p>
+     *
+     * @param stats the statistics
+     * @return the total
+     */
+    public static CommandTreeStats sum(Iterable<CommandTreeStats> stats) {
+        CommandTreeStats total = new CommandTreeStats(null);
+        for (CommandTreeStats s : stats) {
+            total.rootNodes += s.rootNodes;
+            total.literalNodes += s.literalNodes;
+            total.argumentNodes += s.argumentNodes;
+            total.redirectNodes += s.redirectNodes;
+            total.argumentTypes += s.argumentTypes;
+            total.duplicateArgumentTypes += s.duplicateArgumentTypes;
+            total.names += s.names;
+            total.duplicateNames += s.duplicateNames;
+            total.estimatedRetainedSize += s.estimatedRetainedSize;
+        }
+        return total;
+    }
+
+    // approximate object sizes, in bytes
+    private static final int ROOT_NODE_SIZE = 48;
+    private static final int LITERAL_NODE_SIZE = 48;
+    private static final int ARGUMENT_NODE_SIZE = 56;
+    private static final int MAP_SIZE = 56; // LinkedHashMap, excluding the table
+    private static final int MAP_ENTRY_SIZE = 40;
+    private static final int STRING_SIZE = 24; // excluding the backing array
+    private static final int ARRAY_HEADER_SIZE = 16;
+    private static final int REFERENCE_SIZE = 4;
+    private static final int ARGUMENT_TYPE_SIZE = 24;
+
+    // each node has three maps: all children, literal children, and argument children
+    private static final int MAPS_PER_NODE = 3;
+
+    // Java 9 and later store Latin-1 strings with one byte per character, Java 8 always uses two
+    private static final boolean COMPACT_STRINGS = !System.getProperty("java.specification.version").startsWith("1.");
+
+    /**
+     * The objects which have already been counted.
+     */
+    private static final class Seen {
+        private final Set<Object> instances = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Set<Object> argumentTypes = new HashSet<>();
+        private final Set<String> names = new HashSet<>();
+    }
+
+    private final Seen seen;
+
+    private int rootNodes = 0;
+    private int literalNodes = 0;
+    private int argumentNodes = 0;
+    private int redirectNodes = 0;
+    private int argumentTypes = 0;
+    private int duplicateArgumentTypes = 0;
+    private int names = 0;
+    private int duplicateNames = 0;
+    private long estimatedRetainedSize = 0;
+
+    private CommandTreeStats(Seen seen) {
+        this.seen = seen;
+    }
+
+    private void visit(CommandNode<?> node) {
+        if (!this.seen.instances.add(node)) {
+            return;
+        }
+
+        if (node instanceof LiteralCommandNode) {
+            this.literalNodes++;
+            this.estimatedRetainedSize += LITERAL_NODE_SIZE;
+        } else if (node instanceof ArgumentCommandNode) {
+            this.argumentNodes++;
+            this.estimatedRetainedSize += ARGUMENT_NODE_SIZE;
+            visitArgumentType(((ArgumentCommandNode<?, ?>) node).getType());
+        } else if (node instanceof RootCommandNode) {
+            this.rootNodes++;
+            this.estimatedRetainedSize += ROOT_NODE_SIZE;
+        }
+        if (node.getRedirect() != null) {
+            this.redirectNodes++;
+        }
+        // the root's name is a constant, so isn't part of the tree
+        if (!(node instanceof RootCommandNode)) {
+            visitName(node.getName());
+        }
+
+        int literalChildren = 0;
+        for (CommandNode<?> child : node.getChildren()) {
+            if (child instanceof LiteralCommandNode) {
+                literalChildren++;
+            }
+        }
+        int children = node.getChildren().size();
+        this.estimatedRetainedSize += MAPS_PER_NODE * MAP_SIZE
+                + mapTableSize(children) + mapTableSize(literalChildren) + mapTableSize(children - literalChildren)
+                + 2L * children * MAP_ENTRY_SIZE;
+
+        for (CommandNode<?> child : node.getChildren()) {
+            visit(child);
+        }
+    }
+
+    private void visitArgumentType(ArgumentType<?> type) {
+        if (!this.seen.instances.add(type)) {
+            return;
+        }
+        this.argumentTypes++;
+        this.estimatedRetainedSize += ARGUMENT_TYPE_SIZE;
+        if (!this.seen.argumentTypes.add(argumentTypeKey(type))) {
+            this.duplicateArgumentTypes++;
+        }
+    }
+
+    // gets a key which is equal for argument types that behave the same
+    static Object argumentTypeKey(ArgumentType<?> type) {
+        Class<?> typeClass = type.getClass();
+        if (typeClass == BoolArgumentType.class) {
+            return typeClass;
+        }
+        if (typeClass == StringArgumentType.class) {
+            return ((StringArgumentType) type).getType();
+        }
+        if (typeClass == IntegerArgumentType.class) {
+            IntegerArgumentType integerType = (IntegerArgumentType) type;
+            return Arrays.asList(typeClass, integerType.getMinimum(), integerType.getMaximum());
+        }
+        if (typeClass == LongArgumentType.class) {
+            LongArgumentType longType = (LongArgumentType) type;
+            return Arrays.asList(typeClass, longType.getMinimum(), longType.getMaximum());
+        }
+        if (typeClass == FloatArgumentType.class) {
+            FloatArgumentType floatType = (FloatArgumentType) type;
+            return Arrays.asList(typeClass, floatType.getMinimum(), floatType.getMaximum());
+        }
+        if (typeClass == DoubleArgumentType.class) {
+            DoubleArgumentType doubleType = (DoubleArgumentType) type;
+            return Arrays.asList(typeClass, doubleType.getMinimum(), doubleType.getMaximum());
+        }
+        // other argument types are expected to implement equals
+        return type;
+    }
+
+    private void visitName(String name) {
+        if (!this.seen.instances.add(name)) {
+            return;
+        }
+        this.names++;
+        this.estimatedRetainedSize += STRING_SIZE + align(ARRAY_HEADER_SIZE + (long) name.length() * bytesPerChar(name));
+        if (!this.seen.names.add(name)) {
+            this.duplicateNames++;
+        }
+    }
+
+    private static int bytesPerChar(String name) {
+        if (!COMPACT_STRINGS) {
+            return 2;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) > 0xFF) {
+                return 2;
+            }
+        }
+        return 1;
+    }
+
+    private static long mapTableSize(int entries) {
+        if (entries == 0) {
+            return 0;
+        }
+        int capacity = 16;
+        while (entries > capacity * 3 / 4) {
+            capacity <<= 1;
+        }
+        return align(ARRAY_HEADER_SIZE + (long) capacity * REFERENCE_SIZE);
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    /**
+     * Gets the total number of nodes, including a {@link RootCommandNode}
+     * if the tree has one, e.g. when collected for a dispatcher's root.
+     *
+     * @return the number of nodes
+     */
+    public int getNodes() {
+        return this.rootNodes + this.literalNodes + this.argumentNodes;
+    }
+
+    /**
+     * Gets the number of literal nodes.
+     *
+     * @return the number of literal nodes
+     */
+    public int getLiteralNodes() {
+        return this.literalNodes;
+    }
+
+    /**
+     * Gets the number of argument nodes.
+     *
+     * @return the number of argument nodes
+     */
+    public int getArgumentNodes() {
+        return this.argumentNodes;
+    }
+
+    /**
+     * Gets the number of nodes which redirect to another node.
+     *
+     * @return the number of redirecting nodes
+     */
+    public int getRedirectNodes() {
+        return this.redirectNodes;
+    }
+
+    /**
+     * Gets the number of argument type instances.
+     *
+     * @return the number of argument types
+     */
+    public int getArgumentTypes() {
+        return this.argumentTypes;
+    }
+
+    /**
+     * Gets the number of argument type instances which are equivalent to another
+     * instance, and so could have been shared.
+     *
+     * @return the number of duplicate argument types
+     */
+    public int getDuplicateArgumentTypes() {
+        return this.duplicateArgumentTypes;
+    }
+
+    /**
+     * Gets the number of node name string instances.
+     *
+     * @return the number of names
+     */
+    public int getNames() {
+        return this.names;
+    }
+
+    /**
+     * Gets the number of node name string instances which are equal to
+     * another instance, and so could have been shared.
+     *
+     * @return the number of duplicate names
+     */
+    public int getDuplicateNames() {
+        return this.duplicateNames;
+    }
+
+    /**
+     * Gets the estimated retained size of the tree, in bytes.
+     *
+     * <p>This doesn't include node commands, requirements or the argument
+     * types' own fields beyond a typical small argument type.</p>
+     *
+     * @return the estimated size
+     */
+    public long getEstimatedRetainedSize() {
+        return this.estimatedRetainedSize;
+    }
+
+    @Override
+    public String toString() {
+        return "CommandTreeStats(" +
+                "nodes=" + getNodes() +
+                ", literalNodes=" + this.literalNodes +
+                ", argumentNodes=" + this.argumentNodes +
+                ", redirectNodes=" + this.redirectNodes +
+                ", argumentTypes=" + this.argumentTypes +
+                ", duplicateArgumentTypes=" + this.duplicateArgumentTypes +
+                ", names=" + this.names +
+                ", duplicateNames=" + this.duplicateNames +
+                ", estimatedRetainedSize=" + this.estimatedRetainedSize +
+                ")";
+    }
+}
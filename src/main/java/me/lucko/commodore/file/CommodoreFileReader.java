@@ -29,18 +29,35 @@ import com.mojang.brigadier.tree.CommandNode;
 import com.mojang.brigadier.tree.LiteralCommandNode;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 
 /**
  * The '.commodore' file format is a simplified way of representing Brigadier
@@ -67,9 +84,17 @@ public class CommodoreFileReader {
     }
 
     private final List<ArgumentTypeParser> argumentTypeParsers;
+    private final RequirementCache requirements;
+    private final FragmentCache fragments;
 
-    CommodoreFileReader(List<ArgumentTypeParser> argumentTypeParsers) {
+    // lexer & parser state reused between calls to parse from strings - held by the
+    // reader rather than a ThreadLocal, so that it can't outlive the reader
+    private final Deque<StringParser> stringParsers = new ConcurrentLinkedDeque<>();
+
+    CommodoreFileReader(List<ArgumentTypeParser> argumentTypeParsers, FragmentResolver fragmentResolver, RequirementFactory requirementFactory) {
         this.argumentTypeParsers = Collections.unmodifiableList(argumentTypeParsers);
+        this.requirements = new RequirementCache(requirementFactory);
+        this.fragments = new FragmentCache(fragmentResolver, this.argumentTypeParsers, this.requirements);
     }
 
     /**
@@ -82,14 +107,23 @@ public class CommodoreFileReader {
      * @throws RuntimeException if an error occurs whilst lexing or parsing the file
      */
     public <S> LiteralCommandNode<S> parse(Reader reader) throws IOException {
+        return parse(reader, null);
+    }
+
+    private <S> LiteralCommandNode<S> parse(Reader reader, String source) throws IOException {
         try {
-            return new Parser<S>(new Lexer(reader), argumentTypeParsers).parse();
+            return new Parser(new Lexer(reader, source), this.argumentTypeParsers, this.requirements, this.fragments).<S>parse();
         } catch (ParseException e) {
-            if (e.getCause() instanceof IOException) {
-                throw ((IOException) e.getCause());
-            }
-            throw new IOException(e);
+            throw toIOException(e);
+        }
+    }
+
+    // parse exceptions are thrown as the cause of an IOException, unless caused by one
+    private static IOException toIOException(ParseException e) {
+        if (e.getCause() instanceof IOException) {
+            return (IOException) e.getCause();
         }
+        return new IOException(e);
     }
 
     /**
@@ -135,11 +169,376 @@ public class CommodoreFileReader {
         return parse(file.toPath());
     }
 
+    /**
+     * Parses a {@link CommandTemplate} from a commodore file.
+     *
+     * <p>Unlike {@link #parse(Reader)}, the result isn't bound to a sender
+     * type, and can be built into command nodes for any number of sender
+     * types without reading the file again.</p>
+     *
+     * @param reader a reader for the file
+     * @return the template
+     * @throws IOException if an error occurs whilst reading the file
+     * @throws RuntimeException if an error occurs whilst lexing or parsing the file
+     */
+    public CommandTemplate parseTemplate(Reader reader) throws IOException {
+        try {
+            return new CommandTemplate(new Parser(new Lexer(reader), this.argumentTypeParsers, this.requirements, this.fragments).parseTemplate());
+        } catch (ParseException e) {
+            throw toIOException(e);
+        }
+    }
+
+    /**
+     * Parses a {@link CommandTemplate} from a commodore file.
+     *
+     * @param inputStream an inputStream for the file
+     * @return the template
+     * @throws IOException if an error occurs whilst reading the file
+     * @throws RuntimeException if an error occurs whilst lexing or parsing the file
+     * @see #parseTemplate(Reader)
+     */
+    public CommandTemplate parseTemplate(InputStream inputStream) throws IOException {
+        try (InputStreamReader reader = new InputStreamReader(inputStream)) {
+            return parseTemplate(reader);
+        }
+    }
+
+    /**
+     * Parses a {@link CommandTemplate} from a commodore file.
+     *
+     * @param path the path to the file
+     * @return the template
+     * @throws IOException if an error occurs whilst reading the file
+     * @throws RuntimeException if an error occurs whilst lexing or parsing the file
+     * @see #parseTemplate(Reader)
+     */
+    public CommandTemplate parseTemplate(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return parseTemplate(reader);
+        }
+    }
+
+    /**
+     * Parses a {@link CommandTemplate} from a commodore file.
+     *
+     * @param file the file
+     * @return the template
+     * @throws IOException if an error occurs whilst reading the file
+     * @throws RuntimeException if an error occurs whilst lexing or parsing the file
+     * @see #parseTemplate(Reader)
+     */
+    public CommandTemplate parseTemplate(File file) throws IOException {
+        return parseTemplate(file.toPath());
+    }
+
+    /**
+     * Parses a {@link CommandTemplate} from a string containing a
+     * commodore definition.
+     *
+     * @param input the definition
+     * @return the template
+     * @throws IOException if an error occurs whilst lexing or parsing the definition,
+     *         with the {@link ParseException} as its cause
+     * @see #parseTemplate(Reader)
+     * @see #parse(CharSequence)
+     */
+    public CommandTemplate parseTemplate(CharSequence input) throws IOException {
+        Objects.requireNonNull(input, "input");
+        StringParser stringParser = acquireStringParser();
+        try {
+            return new CommandTemplate(stringParser.parseTemplate(input));
+        } catch (ParseException e) {
+            throw toIOException(e);
+        } finally {
+            releaseStringParser(stringParser);
+        }
+    }
+
+    /**
+     * Parses all of the '.commodore' files in a zip or jar archive.
+     *
+     * <p>Entries are parsed concurrently using the common fork-join pool.</p>
+     *
+     * @param archive the path to the archive
+     * @param <S> the command node sender type
+     * @return the parsed commands, and any errors
+     * @throws IOException if an error occurs whilst opening the archive
+     * @see #parseArchive(Path, Executor)
+     */
+    public <S> CommandPack<S> parseArchive(Path archive) throws IOException {
+        return parseArchive(archive, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parses all of the '.commodore' files in a zip or jar archive.
+     *
+     * <p>Entries are read directly from the archive - they are not extracted
+     * or buffered in full before being parsed. A problem with one entry
+     * does not prevent the others from being parsed, and is instead reported
+     * in {@link CommandPack#getErrors()}.</p>
+     *
+     * <p>Archives on other file systems, for example inside a jar opened as a
+     * {@link java.nio.file.FileSystem}, can't be read in place. These are
+     * streamed instead, and each entry is buffered before being parsed.</p>
+     *
+     * @param archive the path to the archive
+     * @param executor the executor to parse entries with
+     * @param <S> the command node sender type
+     * @return the parsed commands, and any errors
+     * @throws IOException if an error occurs whilst opening the archive
+     */
+    public <S> CommandPack<S> parseArchive(Path archive, Executor executor) throws IOException {
+        Objects.requireNonNull(archive, "archive");
+        Objects.requireNonNull(executor, "executor");
+
+        if (archive.getFileSystem() != FileSystems.getDefault()) {
+            return parseArchiveStream(archive, executor);
+        }
+
+        try (ZipFile zipFile = new ZipFile(archive.toFile(), StandardCharsets.UTF_8)) {
+            Map<String, CompletableFuture<LiteralCommandNode<S>>> futures = new LinkedHashMap<>();
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory() || !entry.getName().endsWith(".commodore")) {
+                    continue;
+                }
+
+                futures.put(entry.getName(), parseEntryAsync(() -> zipFile.getInputStream(entry), entry.getName(), executor));
+            }
+
+            // wait for all entries to be parsed before the archive is closed
+            return collectArchive(futures);
+        }
+    }
+
+    private <S> CommandPack<S> parseArchiveStream(Path archive, Executor executor) throws IOException {
+        Map<String, CompletableFuture<LiteralCommandNode<S>>> futures = new LinkedHashMap<>();
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(archive), StandardCharsets.UTF_8)) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                if (entry.isDirectory() || !entry.getName().endsWith(".commodore")) {
+                    continue;
+                }
+
+                // the stream moves on to the next entry, so this one has to be buffered
+                EntryBuffer buffer = new EntryBuffer(entry.getSize());
+                byte[] bytes = new byte[8192];
+                int read;
+                while ((read = in.read(bytes)) != -1) {
+                    buffer.write(bytes, 0, read);
+                }
+                futures.put(entry.getName(), parseEntryAsync(buffer::toInputStream, entry.getName(), executor));
+            }
+        }
+        return collectArchive(futures);
+    }
+
+    private <S> CompletableFuture<LiteralCommandNode<S>> parseEntryAsync(EntryOpener opener, String name, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (Reader reader = new InputStreamReader(opener.open(), StandardCharsets.UTF_8)) {
+                return this.<S>parse(reader, name);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private static <S> CommandPack<S> collectArchive(Map<String, CompletableFuture<LiteralCommandNode<S>>> futures) {
+        Map<String, LiteralCommandNode<S>> commands = new LinkedHashMap<>();
+        Map<String, Exception> errors = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<LiteralCommandNode<S>>> future : futures.entrySet()) {
+            try {
+                commands.put(future.getKey(), future.getValue().join());
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    errors.put(future.getKey(), (Exception) cause);
+                } else {
+                    throw e;
+                }
+            }
+        }
+        return new CommandPack<>(commands, errors);
+    }
+
+    /**
+     * Parses a {@link LiteralCommandNode} from a string containing a
+     * commodore definition.
+     *
+     * <p>This reads the {@link CharSequence} directly, and reuses lexer and
+     * parser state between calls, so is much cheaper than
+     * {@link #parse(Reader)} for lots of small definitions.</p>
+     *
+     * @param input the definition
+     * @param <S> the command node sender type
+     * @return the command node
+     * @throws IOException if an error occurs whilst lexing or parsing the definition,
+     *         with the {@link ParseException} as its cause
+     */
+    public <S> LiteralCommandNode<S> parse(CharSequence input) throws IOException {
+        Objects.requireNonNull(input, "input");
+        StringParser stringParser = acquireStringParser();
+        try {
+            return stringParser.parse(input);
+        } catch (ParseException e) {
+            throw toIOException(e);
+        } finally {
+            releaseStringParser(stringParser);
+        }
+    }
+
+    /**
+     * Parses a {@link LiteralCommandNode} from each of the given strings
+     * containing commodore definitions.
+     *
+     * @param inputs the definitions
+     * @param <S> the command node sender type
+     * @return the command nodes, in the same order as the inputs
+     * @throws IOException if an error occurs whilst lexing or parsing any of the definitions,
+     *         with a {@link ParseException} naming the index of the definition as its cause
+     * @see #parse(CharSequence)
+     */
+    public <S> List<LiteralCommandNode<S>> parse(Iterable<? extends CharSequence> inputs) throws IOException {
+        Objects.requireNonNull(inputs, "inputs");
+        List<LiteralCommandNode<S>> nodes = inputs instanceof Collection ? new ArrayList<>(((Collection<?>) inputs).size()) : new ArrayList<>();
+
+        StringParser stringParser = acquireStringParser();
+        try {
+            int index = 0;
+            for (CharSequence input : inputs) {
+                try {
+                    nodes.add(stringParser.<S>parse(input));
+                } catch (ParseException e) {
+                    throw toIOException(new ParseException("Unable to parse definition " + index + ": " + e.getReason(), e, e.getLine(), e.getColumn(), e.getSource(), true));
+                }
+                index++;
+            }
+        } finally {
+            releaseStringParser(stringParser);
+        }
+        return nodes;
+    }
+
+    private StringParser createStringParser() {
+        return new StringParser(this.argumentTypeParsers, this.requirements, this.fragments);
+    }
+
+    // each parser is only used by one call at a time, so concurrent and re-entrant
+    // calls (e.g. from an argument type parser) are given a parser of their own
+    private StringParser acquireStringParser() {
+        StringParser stringParser = this.stringParsers.pollFirst();
+        return stringParser != null ? stringParser : createStringParser();
+    }
+
+    private void releaseStringParser(StringParser stringParser) {
+        // don't hold onto the last input
+        stringParser.lexer.reset("", null);
+        this.stringParsers.offerFirst(stringParser);
+    }
+
+    /**
+     * Validates a commodore file, without building any command nodes.
+     *
+     * <p>Unlike {@link #parse(Reader)}, validation does not stop at the first
+     * problem. The parser skips to the end of the broken node definition and
+     * carries on, so all problems in the file are reported at once.</p>
+     *
+     * @param reader a reader for the file
+     * @return the problems found in the file, or an empty list if it is valid
+     * @throws IOException if an error occurs whilst reading the file
+     */
+    public List<Diagnostic> validate(Reader reader) throws IOException {
+        List<Diagnostic> diagnostics = new ArrayList<>();
+        try {
+            new Parser(new Lexer(reader, null, diagnostics), this.argumentTypeParsers, this.requirements, this.fragments).validate();
+        } catch (ParseException e) {
+            // not thrown when validating
+            throw new AssertionError(e);
+        } catch (RuntimeException e) {
+            // lexer exceptions are wrapped by the token iterator
+            if (e.getCause() instanceof ParseException && e.getCause().getCause() instanceof IOException) {
+                throw ((IOException) e.getCause().getCause());
+            }
+            throw e;
+        }
+        return diagnostics;
+    }
+
+    /**
+     * Validates a commodore file, without building any command nodes.
+     *
+     * @param path the path to the file
+     * @return the problems found in the file, or an empty list if it is valid
+     * @throws IOException if an error occurs whilst reading the file
+     * @see #validate(Reader)
+     */
+    public List<Diagnostic> validate(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return validate(reader);
+        }
+    }
+
+    /**
+     * Opens the contents of an archive entry.
+     */
+    @FunctionalInterface
+    private interface EntryOpener {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * Buffers an archive entry, and reads it back without copying the buffer.
+     */
+    private static final class EntryBuffer extends ByteArrayOutputStream {
+        EntryBuffer(long size) {
+            // the size is -1 if unknown, and isn't trusted beyond a sensible initial capacity
+            super(size > 0 ? (int) Math.min(size, 1 << 20) : 8192);
+        }
+
+        InputStream toInputStream() {
+            return new ByteArrayInputStream(this.buf, 0, this.count);
+        }
+    }
+
+    /**
+     * Lexer and parser state used to parse from strings.
+     */
+    private static final class StringParser {
+        private final Lexer lexer;
+        private final Parser parser;
+
+        StringParser(List<ArgumentTypeParser> argumentTypeParsers, RequirementCache requirements, FragmentCache fragments) {
+            this.lexer = new Lexer("", null);
+            this.parser = new Parser(this.lexer, argumentTypeParsers, requirements, fragments);
+        }
+
+        <S> LiteralCommandNode<S> parse(CharSequence input) throws ParseException {
+            return (LiteralCommandNode<S>) parseTemplate(input).<S>build();
+        }
+
+        NodeTemplate parseTemplate(CharSequence input) throws ParseException {
+            this.lexer.reset(input, null);
+            try {
+                return this.parser.parseTemplate();
+            } catch (RuntimeException e) {
+                // lexer exceptions are wrapped by the token iterator
+                if (e.getCause() instanceof ParseException) {
+                    throw (ParseException) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+
     /**
      * Builder for {@link CommodoreFileReader}.
      */
     public static final class Builder {
         private final List<ArgumentTypeParser> argumentTypeParsers = new ArrayList<>();
+        private FragmentResolver fragmentResolver = null;
+        private RequirementFactory requirementFactory = null;
 
         Builder() {
 
@@ -157,13 +556,76 @@ public class CommodoreFileReader {
             return this;
         }
 
+        /**
+         * Adds the {@link ArgumentTypeParser}s provided by any
+         * {@link ArgumentTypeParserProvider}s registered as services on the
+         * context class loader.
+         *
+         * @return this builder
+         * @see #withDiscoveredArgumentTypeParsers(ClassLoader)
+         */
+        public Builder withDiscoveredArgumentTypeParsers() {
+            return withDiscoveredArgumentTypeParsers(Thread.currentThread().getContextClassLoader());
+        }
+
+        /**
+         * Adds the {@link ArgumentTypeParser}s provided by any
+         * {@link ArgumentTypeParserProvider}s registered as services on the
+         * given class loader.
+         *
+         * <p>Each parser is only created when a file first references one of
+         * the namespaces declared by its provider.</p>
+         *
+         * @param classLoader the class loader to discover providers with
+         * @return this builder
+         */
+        public Builder withDiscoveredArgumentTypeParsers(ClassLoader classLoader) {
+            for (ArgumentTypeParserProvider provider : ServiceLoader.load(ArgumentTypeParserProvider.class, classLoader)) {
+                this.argumentTypeParsers.add(new LazyArgumentTypeParser(provider));
+            }
+            return this;
+        }
+
+        /**
+         * Sets the {@link FragmentResolver} used to locate files referenced
+         * by <code>#include</code> directives.
+         *
+         * <p>Included fragments are cached by the built reader, so each
+         * fragment is only read once regardless of how many files include it.</p>
+         *
+         * @param fragmentResolver the resolver
+         * @return this builder
+         */
+        public Builder withFragmentResolver(FragmentResolver fragmentResolver) {
+            Objects.requireNonNull(fragmentResolver, "fragmentResolver");
+            this.fragmentResolver = fragmentResolver;
+            return this;
+        }
+
+        /**
+         * Sets the {@link RequirementFactory} used to create the predicates
+         * for <code>@key</code> requirements declared on nodes.
+         *
+         * <p>The built reader only asks the factory for each distinct key
+         * once, and shares the resulting predicate between all nodes with
+         * that requirement.</p>
+         *
+         * @param requirementFactory the factory
+         * @return this builder
+         */
+        public Builder withRequirementFactory(RequirementFactory requirementFactory) {
+            Objects.requireNonNull(requirementFactory, "requirementFactory");
+            this.requirementFactory = requirementFactory;
+            return this;
+        }
+
         /**
          * Builds a {@link CommodoreFileReader}.
          *
          * @return the reader
          */
         public CommodoreFileReader build() {
-            return new CommodoreFileReader(new ArrayList<>(argumentTypeParsers));
+            return new CommodoreFileReader(new ArrayList<>(argumentTypeParsers), fragmentResolver, requirementFactory);
         }
     }
 
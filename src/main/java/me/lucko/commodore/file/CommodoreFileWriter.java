@@ -0,0 +1,384 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+import com.mojang.brigadier.arguments.ArgumentType;
+import com.mojang.brigadier.tree.ArgumentCommandNode;
+import com.mojang.brigadier.tree.CommandNode;
+import com.mojang.brigadier.tree.LiteralCommandNode;
+import com.mojang.brigadier.tree.RootCommandNode;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Writes {@link CommandNode}s in the '.commodore' file format.
+ *
+ * <p>The output is streamed to the given {@link Appendable} as the tree is
+ * walked, and can be read back into an equal tree using
+ * {@link CommodoreFileReader}.</p>
+ *
+ * <p>Only the structure of the tree is written - node commands and
+ * requirements are not included in the output.</p>
+ *
+ * <p>Redirects can only be written if their target is part of the tree
+ * being written. Other redirects, such as the redirects to the dispatcher's
+ * root node used by commands like <code>execute ... run</code>, can't be
+ * represented, so an {@link IllegalArgumentException} is thrown unless the
+ * writer was built with {@link Builder#omitExternalRedirects()}.</p>
+ */
+public class CommodoreFileWriter {
+
+    /**
+     * A default instance of {@link CommodoreFileWriter}.
+     */
+    public static final CommodoreFileWriter INSTANCE = CommodoreFileWriter.builder()
+            .withArgumentTypeWriter(BrigadierArgumentTypeWriter.INSTANCE)
+            .build();
+
+    /**
+     * Creates a new {@link CommodoreFileWriter} builder.
+     *
+     * @return a new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private static final String INDENT = "  ";
+
+    private final List<ArgumentTypeWriter> argumentTypeWriters;
+    private final boolean omitExternalRedirects;
+
+    CommodoreFileWriter(List<ArgumentTypeWriter> argumentTypeWriters, boolean omitExternalRedirects) {
+        this.argumentTypeWriters = Collections.unmodifiableList(argumentTypeWriters);
+        this.omitExternalRedirects = omitExternalRedirects;
+    }
+
+    /**
+     * Writes a {@link LiteralCommandNode} as a commodore file.
+     *
+     * @param node the command node
+     * @param out the output to append to
+     * @throws IOException if an error occurs whilst writing
+     * @throws IllegalArgumentException if the node can't be represented in the format
+     */
+    public void write(LiteralCommandNode<?> node, Appendable out) throws IOException {
+        Objects.requireNonNull(node, "node");
+        Objects.requireNonNull(out, "out");
+        writeNode(node, out, 0, findRedirectTargets(node));
+    }
+
+    /**
+     * Writes a {@link LiteralCommandNode} as a commodore file.
+     *
+     * <p>The file is only opened once the whole node has been written to
+     * memory, so it is left untouched if the node can't be represented.</p>
+     *
+     * @param node the command node
+     * @param path the path of the file to write to
+     * @throws IOException if an error occurs whilst writing
+     * @throws IllegalArgumentException if the node can't be represented in the format
+     */
+    public void write(LiteralCommandNode<?> node, Path path) throws IOException {
+        Objects.requireNonNull(path, "path");
+        writeFile(render(node), path);
+    }
+
+    /**
+     * Writes a {@link LiteralCommandNode} as a commodore file.
+     *
+     * @param node the command node
+     * @param file the file to write to
+     * @throws IOException if an error occurs whilst writing
+     * @throws IllegalArgumentException if the node can't be represented in the format
+     */
+    public void write(LiteralCommandNode<?> node, File file) throws IOException {
+        write(node, file.toPath());
+    }
+
+    /**
+     * Writes each literal child of a node to its own commodore file in a
+     * directory, for example to snapshot the commands registered with a
+     * dispatcher.
+     *
+     * <p>Files are named after the command, with characters other than
+     * letters, digits, <code>'-'</code>, <code>'_'</code> and
+     * <code>'.'</code> replaced with <code>'_'</code>, e.g.
+     * <code>minecraft:tp</code> is written to <code>minecraft_tp.commodore</code>.
+     * Redirects between commands, such as an alias redirecting to another
+     * command, are outside of each written tree, so can only be written by
+     * a writer built with {@link Builder#omitExternalRedirects()}.</p>
+     *
+     * <p>Every command is written to memory before any file is opened, so no
+     * files are written if one of the commands can't be represented.</p>
+     *
+     * @param root the node whose children should be written, e.g. the dispatcher's root node
+     * @param directory the directory to write the files to
+     * @return the file written for each command, keyed by command name
+     * @throws IOException if an error occurs whilst writing
+     * @throws IllegalArgumentException if a child can't be represented in the format,
+     *         or two commands would be written to the same file
+     */
+    public Map<String, Path> writeAll(CommandNode<?> root, Path directory) throws IOException {
+        Objects.requireNonNull(root, "root");
+        Objects.requireNonNull(directory, "directory");
+
+        Map<String, Path> files = new LinkedHashMap<>();
+        Map<String, String> fileNames = new HashMap<>();
+        for (CommandNode<?> child : root.getChildren()) {
+            if (!(child instanceof LiteralCommandNode)) {
+                throw new IllegalArgumentException("Only literal command nodes can be written as commodore files: " + child);
+            }
+
+            String fileName = toFileName(child.getName());
+            String existing = fileNames.put(fileName.toLowerCase(Locale.ROOT), child.getName());
+            if (existing != null) {
+                throw new IllegalArgumentException("Commands '" + existing + "' and '" + child.getName() + "' would both be written to " + fileName);
+            }
+            files.put(child.getName(), directory.resolve(fileName));
+        }
+
+        Map<String, String> contents = new HashMap<>();
+        for (CommandNode<?> child : root.getChildren()) {
+            contents.put(child.getName(), render((LiteralCommandNode<?>) child));
+        }
+
+        Files.createDirectories(directory);
+        for (Map.Entry<String, Path> file : files.entrySet()) {
+            writeFile(contents.get(file.getKey()), file.getValue());
+        }
+        return Collections.unmodifiableMap(files);
+    }
+
+    private String render(LiteralCommandNode<?> node) throws IOException {
+        StringBuilder out = new StringBuilder();
+        write(node, out);
+        return out.toString();
+    }
+
+    private static void writeFile(String contents, Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write(contents);
+        }
+    }
+
+    private static String toFileName(String name) {
+        StringBuilder fileName = new StringBuilder(name.length() + 10);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean safe = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_' || c == '.';
+            fileName.append(safe ? c : '_');
+        }
+        return fileName.append(".commodore").toString();
+    }
+
+    private void writeNode(CommandNode<?> node, Appendable out, int depth, Map<CommandNode<?>, String> redirectTargets) throws IOException {
+        for (int i = 0; i < depth; i++) {
+            out.append(INDENT);
+        }
+
+        out.append(checkName(node.getName()));
+        if (node instanceof ArgumentCommandNode) {
+            out.append(' ');
+            writeArgumentType(((ArgumentCommandNode<?, ?>) node).getType(), out);
+        }
+
+        CommandNode<?> redirect = node.getRedirect();
+        if (redirect != null) {
+            String target = redirectTargets.get(redirect);
+            if (target != null) {
+                out.append(" -> ").append(target).append(";\n");
+                return;
+            }
+            if (!this.omitExternalRedirects) {
+                throw new IllegalArgumentException("Redirect from '" + node.getName() + "' to " + describeTarget(redirect) + " can't be written, as the target is outside of the written tree");
+            }
+        }
+
+        if (node.getChildren().isEmpty()) {
+            out.append(';');
+            if (redirect != null) {
+                out.append(' ').append(describeOmittedRedirect(redirect));
+            }
+            out.append('\n');
+            return;
+        }
+
+        out.append(" {");
+        if (redirect != null) {
+            out.append(' ').append(describeOmittedRedirect(redirect));
+        }
+        out.append('\n');
+        for (CommandNode<?> child : node.getChildren()) {
+            writeNode(child, out, depth + 1, redirectTargets);
+        }
+        for (int i = 0; i < depth; i++) {
+            out.append(INDENT);
+        }
+        out.append("}\n");
+    }
+
+    private void writeArgumentType(ArgumentType<?> type, Appendable out) throws IOException {
+        for (ArgumentTypeWriter writer : this.argumentTypeWriters) {
+            if (writer.canWrite(type)) {
+                writer.write(type, out);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Unable to write argument type: " + type);
+    }
+
+    private static String checkName(String name) {
+        boolean valid = !name.isEmpty() && !name.equals("->") && !name.equals(Parser.INCLUDE_DIRECTIVE) && !name.startsWith("//") && !name.startsWith("/*");
+        for (int i = 0; valid && i < name.length(); i++) {
+            valid = Lexer.isWordChar(name.charAt(i));
+        }
+        if (!valid) {
+            throw new IllegalArgumentException("Node name can't be represented in the commodore format: '" + name + "'");
+        }
+        return name;
+    }
+
+    private static String describeOmittedRedirect(CommandNode<?> target) {
+        return "// redirect to " + describeTarget(target) + " omitted - the target is outside of the written tree";
+    }
+
+    private static String describeTarget(CommandNode<?> target) {
+        if (target instanceof RootCommandNode) {
+            return "the dispatcher root";
+        }
+        String name = target.getName();
+        boolean printable = true;
+        for (int i = 0; printable && i < name.length(); i++) {
+            printable = Lexer.isWordChar(name.charAt(i));
+        }
+        return printable && !name.isEmpty() ? "'" + name + "'" : "a node";
+    }
+
+    /**
+     * Finds the nodes in the tree which are the target of a redirect, mapped
+     * to their path from the root, or null if they're outside of the tree.
+     *
+     * @param root the root node
+     * @return the redirect targets and their paths
+     */
+    private static Map<CommandNode<?>, String> findRedirectTargets(CommandNode<?> root) {
+        Map<CommandNode<?>, String> targets = new IdentityHashMap<>();
+        collectRedirectTargets(root, targets);
+        if (targets.isEmpty()) {
+            return targets;
+        }
+
+        // targets outside of the tree are left without a path
+        findPaths(root, new ArrayDeque<>(), targets);
+        return targets;
+    }
+
+    private static void collectRedirectTargets(CommandNode<?> node, Map<CommandNode<?>, String> targets) {
+        if (node.getRedirect() != null) {
+            targets.put(node.getRedirect(), null);
+        }
+        for (CommandNode<?> child : node.getChildren()) {
+            collectRedirectTargets(child, targets);
+        }
+    }
+
+    private static void findPaths(CommandNode<?> node, Deque<String> path, Map<CommandNode<?>, String> targets) {
+        path.addLast(node.getName());
+        if (targets.containsKey(node) && targets.get(node) == null) {
+            targets.put(node, String.join(" ", path));
+        }
+        for (CommandNode<?> child : node.getChildren()) {
+            findPaths(child, path, targets);
+        }
+        path.removeLast();
+    }
+
+    /**
+     * Builder for {@link CommodoreFileWriter}.
+     */
+    public static final class Builder {
+        private final List<ArgumentTypeWriter> argumentTypeWriters = new ArrayList<>();
+        private boolean omitExternalRedirects = false;
+
+        Builder() {
+
+        }
+
+        /**
+         * Adds an {@link ArgumentTypeWriter} for the writer to use.
+         *
+         * @param argumentTypeWriter the argument type writer
+         * @return this builder
+         */
+        public Builder withArgumentTypeWriter(ArgumentTypeWriter argumentTypeWriter) {
+            Objects.requireNonNull(argumentTypeWriter, "argumentTypeWriter");
+            this.argumentTypeWriters.add(argumentTypeWriter);
+            return this;
+        }
+
+        /**
+         * Allows redirects whose target is outside of the written tree to be
+         * left out, rather than throwing an {@link IllegalArgumentException}.
+         *
+         * <p>The redirecting node is written as a normal node, followed by a
+         * comment describing the redirect which was omitted. The node won't
+         * redirect when the output is read back in.</p>
+         *
+         * @return this builder
+         */
+        public Builder omitExternalRedirects() {
+            this.omitExternalRedirects = true;
+            return this;
+        }
+
+        /**
+         * Builds a {@link CommodoreFileWriter}.
+         *
+         * @return the writer
+         */
+        public CommodoreFileWriter build() {
+            return new CommodoreFileWriter(new ArrayList<>(this.argumentTypeWriters), this.omitExternalRedirects);
+        }
+    }
+
+}
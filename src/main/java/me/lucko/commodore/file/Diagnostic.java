@@ -0,0 +1,88 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+/**
+ * A problem found whilst validating a commodore file.
+ *
+ * @see CommodoreFileReader#validate(java.io.Reader)
+ */
+public final class Diagnostic {
+    private final String message;
+    private final int line;
+    private final int column;
+    private final String source;
+
+    Diagnostic(String message, int line, int column, String source) {
+        this.message = message;
+        this.line = line;
+        this.column = column;
+        this.source = source;
+    }
+
+    /**
+     * Gets a description of the problem.
+     *
+     * @return the message
+     */
+    public String getMessage() {
+        return this.message;
+    }
+
+    /**
+     * Gets the line where the problem occurred.
+     *
+     * @return the line number, starting at 1
+     */
+    public int getLine() {
+        return this.line;
+    }
+
+    /**
+     * Gets the column where the problem occurred, or 0 if unknown.
+     *
+     * @return the column number, starting at 1
+     */
+    public int getColumn() {
+        return this.column;
+    }
+
+    /**
+     * Gets the name of the file the problem occurred in, such as an
+     * included fragment, or null if it occurred in the file being validated
+     * and that file wasn't read with a name.
+     *
+     * @return the source file name
+     */
+    public String getSource() {
+        return this.source;
+    }
+
+    @Override
+    public String toString() {
+        return (this.source == null ? "" : this.source + ":") + this.line + ":" + this.column + ": " + this.message;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the parsed contents of included fragment files, so that each
+ * fragment is only lexed and parsed once per {@link CommodoreFileReader}.
+ */
+class FragmentCache {
+    private final FragmentResolver resolver;
+    private final Collection<ArgumentTypeParser> argumentTypeParsers;
+    private final RequirementCache requirements;
+    private final Map<String, List<NodeTemplate>> fragments = new ConcurrentHashMap<>();
+
+    FragmentCache(FragmentResolver resolver, Collection<ArgumentTypeParser> argumentTypeParsers, RequirementCache requirements) {
+        this.resolver = resolver;
+        this.argumentTypeParsers = argumentTypeParsers;
+        this.requirements = requirements;
+    }
+
+    List<NodeTemplate> load(String include, Lexer includer, Deque<String> includeStack) throws ParseException {
+        // so that 'a', './a' and 'sub/../a' share a cache entry and are seen as the same file in cycles
+        String name = normalizeName(include);
+        if (includeStack.contains(name)) {
+            throw includer.createException("Circular include: " + String.join(" -> ", includeStack) + " -> " + name);
+        }
+
+        List<NodeTemplate> fragment = this.fragments.get(name);
+        if (fragment != null) {
+            return fragment;
+        }
+
+        if (this.resolver == null) {
+            throw includer.createException("Unable to include '" + name + "': no fragment resolver has been configured");
+        }
+
+        // when validating, problems in the fragment are reported alongside those in
+        // the including file, unless an earlier include has already reported them
+        List<Diagnostic> diagnostics = null;
+        if (includer.isValidating()) {
+            diagnostics = includer.getDiagnostics();
+            if (hasReported(diagnostics, name)) {
+                diagnostics = new ArrayList<>();
+            }
+        }
+
+        // can't use computeIfAbsent here - fragments may include other fragments
+        includeStack.addLast(name);
+        try (Reader reader = this.resolver.open(name)) {
+            Lexer lexer = diagnostics == null ? new Lexer(reader, name) : new Lexer(reader, name, diagnostics);
+            fragment = new Parser(lexer, this.argumentTypeParsers, this.requirements, this, includeStack).parseFragment();
+        } catch (IOException e) {
+            throw includer.createException("Unable to read included file '" + name + "': " + e);
+        } catch (ParseException e) {
+            throw includer.createException("Error in included file '" + name + "': " + e.getReason(), e);
+        } finally {
+            includeStack.removeLast();
+        }
+
+        if (diagnostics != null) {
+            // when validating, requirements aren't created and broken nodes are
+            // skipped, so the fragment mustn't be reused for parsing
+            return fragment;
+        }
+
+        List<NodeTemplate> existing = this.fragments.putIfAbsent(name, fragment);
+        return existing != null ? existing : fragment;
+    }
+
+    /**
+     * Removes '.' segments, '..' segments which follow a named segment and
+     * empty segments from an include name. Leading '/' and '..' segments
+     * are kept, for the resolver to accept or reject.
+     *
+     * @param name the name, as written in the include
+     * @return the normalized name
+     */
+    static String normalizeName(String name) {
+        if (name.indexOf('.') == -1 && !name.contains("//") && !name.endsWith("/")) {
+            return name;
+        }
+
+        Deque<String> segments = new ArrayDeque<>();
+        for (String segment : name.split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            }
+            if (segment.equals("..") && !segments.isEmpty() && !segments.peekLast().equals("..")) {
+                segments.removeLast();
+            } else {
+                segments.addLast(segment);
+            }
+        }
+        if (segments.isEmpty()) {
+            return name;
+        }
+        String normalized = String.join("/", segments);
+        return name.startsWith("/") ? "/" + normalized : normalized;
+    }
+
+    private static boolean hasReported(List<Diagnostic> diagnostics, String name) {
+        for (Diagnostic diagnostic : diagnostics) {
+            if (name.equals(diagnostic.getSource())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Resolves the fragment files referenced by <code>#include</code> directives.
+ */
+public interface FragmentResolver {
+
+    /**
+     * Creates a {@link FragmentResolver} which resolves fragment names
+     * relative to the given directory.
+     *
+     * <p>Names must be relative paths which stay inside the directory once
+     * normalized - absolute names and names such as <code>../secret</code>
+     * are rejected. Symbolic links inside the directory are followed.</p>
+     *
+     * @param directory the directory containing the fragments
+     * @return a resolver
+     */
+    static FragmentResolver directory(Path directory) {
+        Objects.requireNonNull(directory, "directory");
+        Path root = directory.toAbsolutePath().normalize();
+        return name -> {
+            Path path;
+            try {
+                path = root.getFileSystem().getPath(name);
+            } catch (InvalidPathException e) {
+                throw new AccessDeniedException(name, null, e.getReason());
+            }
+            if (path.isAbsolute() || path.getRoot() != null) {
+                throw new AccessDeniedException(name, null, "fragment names must be relative paths");
+            }
+
+            Path resolved = root.resolve(path).normalize();
+            if (!resolved.startsWith(root)) {
+                throw new AccessDeniedException(name, null, "outside of the fragment directory");
+            }
+            return Files.newBufferedReader(resolved, StandardCharsets.UTF_8);
+        };
+    }
+
+    /**
+     * Creates a {@link FragmentResolver} which resolves fragment names
+     * as resources of the given class loader.
+     *
+     * <p>Names containing <code>..</code> segments or starting with
+     * <code>/</code> are rejected, so that they can't escape the prefix.</p>
+     *
+     * @param classLoader the class loader to load resources from
+     * @param prefix the prefix to prepend to fragment names, e.g. <code>"commands/"</code>
+     * @return a resolver
+     */
+    static FragmentResolver classLoader(ClassLoader classLoader, String prefix) {
+        Objects.requireNonNull(classLoader, "classLoader");
+        Objects.requireNonNull(prefix, "prefix");
+        return name -> {
+            if (name.startsWith("/") || name.indexOf('\\') != -1 || Arrays.asList(name.split("/")).contains("..")) {
+                throw new AccessDeniedException(name, null, "outside of the fragment prefix");
+            }
+            InputStream inputStream = classLoader.getResourceAsStream(prefix + name);
+            if (inputStream == null) {
+                throw new FileNotFoundException(prefix + name);
+            }
+            return new InputStreamReader(inputStream, StandardCharsets.UTF_8);
+        };
+    }
+
+    /**
+     * Opens a reader for the fragment with the given name.
+     *
+     * @param name the name of the fragment, as written in the include directive
+     * @return a reader for the fragment
+     * @throws IOException if the fragment cannot be found or read
+     */
+    Reader open(String name) throws IOException;
+
+}
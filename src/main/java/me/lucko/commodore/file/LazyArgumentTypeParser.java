@@ -0,0 +1,73 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+import com.mojang.brigadier.arguments.ArgumentType;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * An {@link ArgumentTypeParser} which creates the underlying parser from an
+ * {@link ArgumentTypeParserProvider} when its namespace is first used.
+ */
+final class LazyArgumentTypeParser implements ArgumentTypeParser {
+    private final ArgumentTypeParserProvider provider;
+    private final Set<String> namespaces;
+    private volatile ArgumentTypeParser parser = null;
+
+    LazyArgumentTypeParser(ArgumentTypeParserProvider provider) {
+        this.provider = provider;
+        this.namespaces = new HashSet<>(provider.getNamespaces());
+    }
+
+    private ArgumentTypeParser getParser() {
+        ArgumentTypeParser parser = this.parser;
+        if (parser == null) {
+            synchronized (this) {
+                parser = this.parser;
+                if (parser == null) {
+                    parser = this.provider.createParser();
+                    if (parser == null) {
+                        throw new IllegalStateException("Provider " + this.provider.getClass().getName() + " returned a null parser");
+                    }
+                    this.parser = parser;
+                }
+            }
+        }
+        return parser;
+    }
+
+    @Override
+    public boolean canParse(String namespace, String name) {
+        return this.namespaces.contains(namespace) && getParser().canParse(namespace, name);
+    }
+
+    @Override
+    public ArgumentType<?> parse(String namespace, String name, TokenStream tokenStream) throws ParseException {
+        return getParser().parse(namespace, name, tokenStream);
+    }
+}
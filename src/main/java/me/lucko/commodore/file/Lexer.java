@@ -27,63 +27,285 @@ package me.lucko.commodore.file;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StreamTokenizer;
+import java.util.List;
 
 class Lexer extends AbstractIterator<Token> implements TokenStream {
-    private final StreamTokenizer tokenizer;
+    private static final int BUFFER_SIZE = 8192;
+
+    // the input is read either from a reader (via the buffer), or directly from a char sequence
+    private Reader reader;
+    private char[] buffer;
+    private CharSequence input;
+    private int position = 0;
+    private int limit = 0;
+
+    private String source;
+    private final List<Diagnostic> diagnostics;
+
+    // the position of the next character to be read
+    private int line = 1;
+    private int column = 1;
+    private boolean lastWasCarriageReturn = false;
+
+    // the position of the start of the most recently scanned token
+    private int tokenLine = 1;
+    private int tokenColumn = 1;
+
+    private final StringBuilder word = new StringBuilder();
     private boolean end = false;
 
     Lexer(Reader reader) {
-        this.tokenizer = new StreamTokenizer(reader);
-        this.tokenizer.resetSyntax();
-        this.tokenizer.wordChars('\u0021', '\u007E'); // all ascii characters
-        this.tokenizer.quoteChar('"');
-        this.tokenizer.whitespaceChars('\u0000', '\u0020');
-        "{};".chars().forEach(this.tokenizer::ordinaryChar);
-        this.tokenizer.slashSlashComments(true);
-        this.tokenizer.slashStarComments(true);
+        this(reader, null);
+    }
+
+    Lexer(Reader reader, String source) {
+        this(reader, source, null);
+    }
+
+    /**
+     * Creates a new lexer.
+     *
+     * <p>If a diagnostics list is given, the lexer runs in validation mode:
+     * unknown characters are reported to the list and skipped, and exceptions
+     * are created without stack traces, as they are only used to carry
+     * diagnostics back to the parser.</p>
+     *
+     * @param reader the reader
+     * @param source the name of the file being read, or null
+     * @param diagnostics the list to report problems to, or null
+     */
+    Lexer(Reader reader, String source, List<Diagnostic> diagnostics) {
+        this.reader = reader;
+        this.buffer = new char[BUFFER_SIZE];
+        this.source = source;
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+     * Creates a new lexer which reads directly from a {@link CharSequence}.
+     *
+     * <p>The lexer can be reused for other inputs using {@link #reset(CharSequence, String)}.</p>
+     *
+     * @param input the input
+     * @param source the name of the input, or null
+     */
+    Lexer(CharSequence input, String source) {
+        this.diagnostics = null;
+        reset(input, source);
+    }
+
+    /**
+     * Resets the lexer to read from the start of a new input.
+     *
+     * @param input the input
+     * @param source the name of the input, or null
+     */
+    void reset(CharSequence input, String source) {
+        resetIterator();
+        this.input = input;
+        this.position = 0;
+        this.limit = input.length();
+        this.source = source;
+        this.line = 1;
+        this.column = 1;
+        this.lastWasCarriageReturn = false;
+        this.tokenLine = 1;
+        this.tokenColumn = 1;
+        this.end = false;
     }
 
     @Override
     protected Token computeNext() throws ParseException {
         if (this.end) {
-            return endOfData();
+            // EOF is never consumed, so that a parser which reads past the end
+            // of the input sees EOF again rather than running out of tokens
+            return Token.ConstantToken.EOF;
         }
         try {
-            int token = this.tokenizer.nextToken();
-            switch (token) {
-                case StreamTokenizer.TT_EOF:
+            while (true) {
+                int c = peekChar(0);
+                this.tokenLine = this.line;
+                this.tokenColumn = this.column;
+
+                if (c == -1) {
                     this.end = true;
                     return Token.ConstantToken.EOF;
-                case StreamTokenizer.TT_WORD:
-                    return new Token.StringToken(this.tokenizer.sval);
-                case '{':
-                    return Token.ConstantToken.OPEN_BRACKET;
-                case '}':
-                    return Token.ConstantToken.CLOSE_BRACKET;
-                case ';':
-                    return Token.ConstantToken.SEMICOLON;
-                default:
-                    throw createException("Unknown token: " + ((char) token) + "(" + token + ")");
+                }
+                if (c <= ' ') {
+                    readChar();
+                    continue;
+                }
+                if (c == '/' && skipComment()) {
+                    continue;
+                }
+                if (isWordChar(c)) {
+                    return readWord();
+                }
+
+                readChar();
+                switch (c) {
+                    case '{':
+                        return Token.ConstantToken.OPEN_BRACKET;
+                    case '}':
+                        return Token.ConstantToken.CLOSE_BRACKET;
+                    case ';':
+                        return Token.ConstantToken.SEMICOLON;
+                    default:
+                        ParseException e = createException("Unknown token: " + ((char) c) + "(" + c + ")");
+                        if (this.diagnostics == null) {
+                            throw e;
+                        }
+                        this.diagnostics.add(e.toDiagnostic());
+                }
             }
         } catch (IOException e) {
             throw createException(e);
         }
     }
 
+    static boolean isWordChar(int c) {
+        if (c >= '\u0100') {
+            return true;
+        }
+        return c > ' ' && c <= '\u007E' && c != '{' && c != '}' && c != ';' && c != '"';
+    }
+
+    private Token readWord() throws IOException {
+        this.word.setLength(0);
+        int c;
+        while ((c = peekChar(0)) != -1 && isWordChar(c)) {
+            this.word.append((char) readChar());
+        }
+
+        if (this.word.length() == 2 && this.word.charAt(0) == '-' && this.word.charAt(1) == '>') {
+            return Token.ConstantToken.ARROW;
+        }
+        return new Token.StringToken(this.word.toString());
+    }
+
+    // skips a comment starting at the next character, returns false if there isn't one
+    private boolean skipComment() throws IOException, ParseException {
+        int next = peekChar(1);
+        if (next == '/') {
+            int c;
+            while ((c = peekChar(0)) != -1 && c != '\n' && c != '\r') {
+                readChar();
+            }
+            return true;
+        }
+        if (next == '*') {
+            readChar();
+            readChar();
+            int c;
+            while ((c = readChar()) != -1) {
+                if (c == '*' && peekChar(0) == '/') {
+                    readChar();
+                    return true;
+                }
+            }
+            ParseException e = createException("Unterminated comment");
+            if (this.diagnostics == null) {
+                throw e;
+            }
+            this.diagnostics.add(e.toDiagnostic());
+            return true;
+        }
+        return false;
+    }
+
+    private int peekChar(int offset) throws IOException {
+        if (this.input != null) {
+            int index = this.position + offset;
+            return index < this.limit ? this.input.charAt(index) : -1;
+        }
+
+        while (this.position + offset >= this.limit) {
+            if (!fill()) {
+                return -1;
+            }
+        }
+        return this.buffer[this.position + offset];
+    }
+
+    private int readChar() throws IOException {
+        char c;
+        if (this.input != null) {
+            if (this.position >= this.limit) {
+                return -1;
+            }
+            c = this.input.charAt(this.position++);
+        } else {
+            if (this.position >= this.limit && !fill()) {
+                return -1;
+            }
+            c = this.buffer[this.position++];
+        }
+
+        if (c == '\n') {
+            if (!this.lastWasCarriageReturn) {
+                this.line++;
+            }
+            this.column = 1;
+        } else if (c == '\r') {
+            this.line++;
+            this.column = 1;
+        } else {
+            this.column++;
+        }
+        this.lastWasCarriageReturn = c == '\r';
+        return c;
+    }
+
+    private boolean fill() throws IOException {
+        // move any unread characters to the start of the buffer
+        int remaining = this.limit - this.position;
+        if (remaining > 0 && this.position > 0) {
+            System.arraycopy(this.buffer, this.position, this.buffer, 0, remaining);
+        }
+        this.position = 0;
+        this.limit = remaining;
+
+        int read = this.reader.read(this.buffer, remaining, this.buffer.length - remaining);
+        if (read <= 0) {
+            return false;
+        }
+        this.limit += read;
+        return true;
+    }
+
+    int getLineNumber() {
+        return this.tokenLine;
+    }
+
+    int getColumnNumber() {
+        return this.tokenColumn;
+    }
+
+    String getSource() {
+        return this.source;
+    }
+
+    boolean isValidating() {
+        return this.diagnostics != null;
+    }
+
+    List<Diagnostic> getDiagnostics() {
+        return this.diagnostics;
+    }
+
     @Override
     public ParseException createException(String message) {
-        return new ParseException(message, this.tokenizer.lineno());
+        return createException(message, null);
     }
 
     @Override
     public ParseException createException(Throwable cause) {
-        return new ParseException(cause, this.tokenizer.lineno());
+        return createException(null, cause);
     }
 
     @Override
     public ParseException createException(String message, Throwable cause) {
-        return new ParseException(message, cause, this.tokenizer.lineno());
+        return new ParseException(message, cause, this.tokenLine, this.tokenColumn, this.source, this.diagnostics == null);
     }
 
 }
@@ -0,0 +1,205 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+import com.mojang.brigadier.arguments.ArgumentType;
+import com.mojang.brigadier.builder.ArgumentBuilder;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import com.mojang.brigadier.builder.RequiredArgumentBuilder;
+import com.mojang.brigadier.tree.CommandNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * An immutable, sender-independent representation of a parsed node.
+ *
+ * <p>Templates can be shared between trees (for example when a fragment
+ * is included more than once) and are converted into real
+ * {@link CommandNode}s using {@link #build()}.</p>
+ */
+final class NodeTemplate {
+    private static final int CHILD_INDEX_THRESHOLD = 8;
+
+    private final String name;
+    private final ArgumentType<?> type;
+    private final Predicate<Object> requirement;
+    private final List<NodeTemplate> children;
+    private final Redirect redirect;
+    private final boolean hasRedirects;
+
+    // index of children by name, built on demand for nodes with lots of children
+    private volatile Map<String, List<NodeTemplate>> childrenByName = null;
+
+    NodeTemplate(String name, ArgumentType<?> type, Predicate<Object> requirement, List<NodeTemplate> children, Redirect redirect) {
+        this.name = name;
+        this.type = type;
+        this.requirement = requirement;
+        this.children = children.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(children);
+        this.redirect = redirect;
+
+        boolean hasRedirects = redirect != null;
+        for (NodeTemplate child : children) {
+            hasRedirects |= child.hasRedirects;
+        }
+        this.hasRedirects = hasRedirects;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public ArgumentType<?> getType() {
+        return this.type;
+    }
+
+    public boolean isLiteral() {
+        return this.type == null;
+    }
+
+    public List<NodeTemplate> getChildren() {
+        return this.children;
+    }
+
+    /**
+     * Gets the children with the given name, in the order they were defined.
+     *
+     * <p>There may be more than one, for example when a fragment defines a
+     * node which already exists. Brigadier merges these into the first of
+     * them when the tree is built.</p>
+     *
+     * @param name the name
+     * @return the children with the name
+     */
+    public List<NodeTemplate> getChildren(String name) {
+        if (this.children.size() <= CHILD_INDEX_THRESHOLD) {
+            List<NodeTemplate> children = Collections.emptyList();
+            for (NodeTemplate child : this.children) {
+                if (child.name.equals(name)) {
+                    if (children.isEmpty()) {
+                        children = Collections.singletonList(child);
+                    } else {
+                        if (children.size() == 1) {
+                            children = new ArrayList<>(children);
+                        }
+                        children.add(child);
+                    }
+                }
+            }
+            return children;
+        }
+
+        Map<String, List<NodeTemplate>> childrenByName = this.childrenByName;
+        if (childrenByName == null) {
+            childrenByName = new HashMap<>();
+            for (NodeTemplate child : this.children) {
+                childrenByName.computeIfAbsent(child.name, n -> new ArrayList<>(1)).add(child);
+            }
+            this.childrenByName = childrenByName;
+        }
+        return childrenByName.getOrDefault(name, Collections.emptyList());
+    }
+
+    public Redirect getRedirect() {
+        return this.redirect;
+    }
+
+    public boolean hasRedirects() {
+        return this.hasRedirects;
+    }
+
+    public Predicate<Object> getRequirement() {
+        return this.requirement;
+    }
+
+    <S> ArgumentBuilder<S, ?> createBuilder() {
+        ArgumentBuilder<S, ?> builder;
+        if (this.type == null) {
+            builder = LiteralArgumentBuilder.literal(this.name);
+        } else {
+            builder = RequiredArgumentBuilder.argument(this.name, this.type);
+        }
+
+        if (this.requirement != null) {
+            // a Predicate<Object> accepts senders of any type
+            @SuppressWarnings("unchecked")
+            Predicate<S> requirement = (Predicate<S>) (Predicate<?>) this.requirement;
+            builder.requires(requirement);
+        }
+        return builder;
+    }
+
+    <S> CommandNode<S> build() throws ParseException {
+        if (this.hasRedirects) {
+            // redirect targets may be defined anywhere in the tree, so
+            // these need to be resolved against the whole tree
+            return new RedirectingTreeBuilder<S>(this).build();
+        }
+        return buildSimple();
+    }
+
+    private <S> CommandNode<S> buildSimple() {
+        ArgumentBuilder<S, ?> node = createBuilder();
+        for (NodeTemplate child : this.children) {
+            node.then(child.<S>buildSimple());
+        }
+        return node.build();
+    }
+
+    /**
+     * The target of a redirecting node, as a path of node names from the root.
+     */
+    static final class Redirect {
+        private final List<String> path;
+        private final int line;
+        private final int column;
+        private final String source;
+
+        Redirect(List<String> path, int line, int column, String source) {
+            this.path = Collections.unmodifiableList(path);
+            this.line = line;
+            this.column = column;
+            this.source = source;
+        }
+
+        public List<String> getPath() {
+            return this.path;
+        }
+
+        ParseException createException(String message, boolean writableStackTrace) {
+            return new ParseException(message, null, this.line, this.column, this.source, writableStackTrace);
+        }
+
+        @Override
+        public String toString() {
+            return String.join(" ", this.path);
+        }
+    }
+}
@@ -29,15 +29,57 @@ package me.lucko.commodore.file;
  * Exception that is thrown if there was a problem parsing.
  */
 public final class ParseException extends Exception {
-    ParseException(String message, int currentLine) {
-        super(message + " (at line " + currentLine + ")");
+    private final String reason;
+    private final int line;
+    private final int column;
+    private final String source;
+
+    ParseException(String message, Throwable cause, int line, int column, String source, boolean writableStackTrace) {
+        super(message == null ? "At " + location(line, source) : message + " (at " + location(line, source) + ")", cause, true, writableStackTrace);
+        this.reason = message == null ? String.valueOf(cause) : message;
+        this.line = line;
+        this.column = column;
+        this.source = source;
+    }
+
+    private static String location(int line, String source) {
+        return source == null ? "line " + line : "line " + line + " of " + source;
+    }
+
+    /**
+     * Gets the line where the problem occurred.
+     *
+     * @return the line number, starting at 1
+     */
+    public int getLine() {
+        return this.line;
+    }
+
+    /**
+     * Gets the column where the problem occurred, or 0 if unknown.
+     *
+     * @return the column number, starting at 1
+     */
+    public int getColumn() {
+        return this.column;
+    }
+
+    /**
+     * Gets the name of the file being parsed when the problem occurred,
+     * such as an included fragment or an archive entry, or null if the
+     * file wasn't read with a name (for example from a {@link java.io.Reader}).
+     *
+     * @return the source file name
+     */
+    public String getSource() {
+        return this.source;
     }
 
-    ParseException(Throwable cause, int currentLine) {
-        super("At line " + currentLine, cause);
+    String getReason() {
+        return this.reason;
     }
 
-    ParseException(String message, Throwable cause, int currentLine) {
-        super(message + " (at line " + currentLine + ")", cause);
+    Diagnostic toDiagnostic() {
+        return new Diagnostic(this.reason, this.line, this.column, this.source);
     }
 }
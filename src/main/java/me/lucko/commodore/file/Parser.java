@@ -26,60 +26,217 @@
 package me.lucko.commodore.file;
 
 import com.mojang.brigadier.arguments.ArgumentType;
-import com.mojang.brigadier.builder.ArgumentBuilder;
-import com.mojang.brigadier.builder.LiteralArgumentBuilder;
-import com.mojang.brigadier.builder.RequiredArgumentBuilder;
-import com.mojang.brigadier.tree.CommandNode;
 import com.mojang.brigadier.tree.LiteralCommandNode;
 
 import me.lucko.commodore.file.Token.StringToken;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+class Parser {
+    static final String INCLUDE_DIRECTIVE = "#include";
+    static final char REQUIREMENT_PREFIX = '@';
 
-class Parser<S> {
     private final Lexer lexer;
     private final Collection<ArgumentTypeParser> argumentTypeParsers;
+    private final RequirementCache requirements;
+    private final FragmentCache fragments;
+    private final Deque<String> includeStack;
+    private final TokenStream argumentTokens = new ArgumentTokenStream();
+
+    // state used when validating
+    private int depth = 0;
+    private boolean reportedEndOfFile = false;
+
+    Parser(Lexer lexer, Collection<ArgumentTypeParser> argumentTypeParsers, RequirementCache requirements, FragmentCache fragments) {
+        this(lexer, argumentTypeParsers, requirements, fragments, new ArrayDeque<>());
+    }
 
-    Parser(Lexer lexer, Collection<ArgumentTypeParser> argumentTypeParsers) {
+    Parser(Lexer lexer, Collection<ArgumentTypeParser> argumentTypeParsers, RequirementCache requirements, FragmentCache fragments, Deque<String> includeStack) {
         this.lexer = lexer;
         this.argumentTypeParsers = argumentTypeParsers;
+        this.requirements = requirements;
+        this.fragments = fragments;
+        this.includeStack = includeStack;
+    }
+
+    <S> LiteralCommandNode<S> parse() throws ParseException {
+        return (LiteralCommandNode<S>) parseRoot().<S>build();
+    }
+
+    /**
+     * Parses the input into a template, checking redirects up front so that
+     * the template can always be built.
+     *
+     * @return the template
+     * @throws ParseException if the input is invalid
+     */
+    NodeTemplate parseTemplate() throws ParseException {
+        NodeTemplate root = parseRoot();
+        validateRedirects(root, root);
+        return root;
     }
 
-    LiteralCommandNode<S> parse() throws ParseException {
-        CommandNode<S> node = parseNode();
-        if (!(node instanceof LiteralCommandNode)) {
+    private NodeTemplate parseRoot() throws ParseException {
+        NodeTemplate node = parseNode();
+        if (!node.isLiteral()) {
             throw this.lexer.createException("Root command node is not a literal command node");
         }
 
         if (this.lexer.peek() != Token.ConstantToken.EOF) {
             throw this.lexer.createException("Expected end of file but got " + this.lexer.peek());
         }
-        return (LiteralCommandNode<S>) node;
+        return node;
+    }
+
+    /**
+     * Validates the input, reporting problems to the lexer's diagnostics list.
+     *
+     * <p>Rather than stopping at the first problem, the parser resynchronizes
+     * at the next <code>;</code> or <code>}</code> and carries on.</p>
+     */
+    void validate() throws ParseException {
+        NodeTemplate root = null;
+        try {
+            root = parseNode();
+            if (!root.isLiteral()) {
+                report(this.lexer.createException("Root command node is not a literal command node"));
+            }
+        } catch (ParseException e) {
+            report(e);
+            recover();
+        }
+
+        if (this.lexer.peek() != Token.ConstantToken.EOF) {
+            report(this.lexer.createException("Expected end of file but got " + this.lexer.peek()));
+
+            // carry on parsing anything else, to report any other problems
+            List<NodeTemplate> ignored = new ArrayList<>();
+            while (this.lexer.peek() != Token.ConstantToken.EOF) {
+                if (this.lexer.peek() == Token.ConstantToken.CLOSE_BRACKET) {
+                    this.lexer.next();
+                    continue;
+                }
+                parseChild(ignored);
+            }
+        }
+
+        if (root != null) {
+            validateRedirects(root, root);
+        }
+    }
+
+    private void report(ParseException e) {
+        this.lexer.getDiagnostics().add(e.toDiagnostic());
+    }
+
+    // skips tokens until the end of the current node definition
+    private void recover() throws ParseException {
+        while (true) {
+            Token token = this.lexer.peek();
+            if (token == Token.ConstantToken.EOF) {
+                return;
+            }
+            if (token == Token.ConstantToken.CLOSE_BRACKET && this.depth > 0) {
+                // leave the bracket for the parent node to consume
+                return;
+            }
+
+            this.lexer.next();
+            if (token == Token.ConstantToken.SEMICOLON) {
+                return;
+            }
+            if (token == Token.ConstantToken.OPEN_BRACKET) {
+                // still validate the children of the broken node
+                parseChildren(new ArrayList<>());
+                return;
+            }
+        }
+    }
+
+    // checks that redirect targets exist and aren't circular
+    private void validateRedirects(NodeTemplate root, NodeTemplate node) throws ParseException {
+        if (!node.hasRedirects()) {
+            return;
+        }
+
+        NodeTemplate.Redirect redirect = node.getRedirect();
+        if (redirect != null) {
+            boolean writableStackTrace = !this.lexer.isValidating();
+            try {
+                Set<NodeTemplate> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+                seen.add(node);
+
+                // the first template found defines the node - see RedirectingTreeBuilder
+                NodeTemplate target = RedirectingTreeBuilder.findTarget(root, redirect, writableStackTrace).get(0);
+                while (target.getRedirect() != null) {
+                    if (!seen.add(target)) {
+                        throw redirect.createException("Circular redirect: " + node.getName() + " -> " + redirect, writableStackTrace);
+                    }
+                    target = RedirectingTreeBuilder.findTarget(root, target.getRedirect(), writableStackTrace).get(0);
+                }
+            } catch (ParseException e) {
+                if (!this.lexer.isValidating()) {
+                    throw e;
+                }
+                report(e);
+            }
+        }
+
+        for (NodeTemplate child : node.getChildren()) {
+            validateRedirects(root, child);
+        }
     }
 
-    private CommandNode<S> parseNode() throws ParseException {
+    List<NodeTemplate> parseFragment() throws ParseException {
+        List<NodeTemplate> nodes = new ArrayList<>();
+        while (this.lexer.peek() != Token.ConstantToken.EOF) {
+            parseChild(nodes);
+        }
+        return nodes;
+    }
+
+    private NodeTemplate parseNode() throws ParseException {
         Token token = this.lexer.next();
         if (!(token instanceof StringToken)) {
             throw this.lexer.createException("Expected string token for node name but got " + token);
         }
 
         String name = ((StringToken) token).getString();
-        ArgumentBuilder<S, ?> node;
+        ArgumentType<?> type = null;
 
-        if (this.lexer.peek() instanceof StringToken) {
-            node = RequiredArgumentBuilder.argument(name, parseArgumentType());
-        } else {
-            node = LiteralArgumentBuilder.literal(name);
+        if (this.lexer.peek() instanceof StringToken && !isRequirement(this.lexer.peek())) {
+            type = parseArgumentType();
         }
 
-        if (this.lexer.peek() == Token.ConstantToken.OPEN_BRACKET) {
-            this.lexer.next();
-            while (this.lexer.peek() != Token.ConstantToken.CLOSE_BRACKET) {
-                CommandNode<S> child = parseNode();
-                node.then(child);
+        Predicate<Object> requirement = null;
+        if (isRequirement(this.lexer.peek())) {
+            String key = ((StringToken) this.lexer.next()).getString().substring(1);
+            // requirements are only checked for syntax when validating, as the
+            // factory may have side effects or not be configured yet
+            if (!this.lexer.isValidating()) {
+                requirement = this.requirements.get(key, this.lexer);
             }
+        }
+
+        if (this.lexer.peek() == Token.ConstantToken.ARROW) {
             this.lexer.next();
+            return new NodeTemplate(name, type, requirement, Collections.emptyList(), parseRedirect());
+        }
+
+        List<NodeTemplate> children = Collections.emptyList();
+        if (this.lexer.peek() == Token.ConstantToken.OPEN_BRACKET) {
+            this.lexer.next();
+            children = new ArrayList<>();
+            parseChildren(children);
         } else {
             if (this.lexer.peek() != Token.ConstantToken.SEMICOLON) {
                 throw this.lexer.createException("Node definition not ended with semicolon, got " + this.lexer.peek());
@@ -87,7 +244,99 @@ class Parser<S> {
             this.lexer.next();
         }
 
-        return node.build();
+        return new NodeTemplate(name, type, requirement, children, null);
+    }
+
+    // parses the children of a node, up to and including the closing bracket
+    private void parseChildren(List<NodeTemplate> children) throws ParseException {
+        this.depth++;
+        try {
+            while (this.lexer.peek() != Token.ConstantToken.CLOSE_BRACKET) {
+                if (this.lexer.peek() == Token.ConstantToken.EOF) {
+                    ParseException e = this.lexer.createException("Unexpected end of file, expected " + Token.ConstantToken.CLOSE_BRACKET);
+                    if (!this.lexer.isValidating()) {
+                        throw e;
+                    }
+
+                    // only report once, rather than for every unclosed node
+                    if (!this.reportedEndOfFile) {
+                        this.reportedEndOfFile = true;
+                        report(e);
+                    }
+                    return;
+                }
+                parseChild(children);
+            }
+            this.lexer.next();
+        } finally {
+            this.depth--;
+        }
+    }
+
+    private NodeTemplate.Redirect parseRedirect() throws ParseException {
+        int line = this.lexer.getLineNumber();
+        int column = this.lexer.getColumnNumber();
+        List<String> path = new ArrayList<>();
+        while (this.lexer.peek() instanceof StringToken) {
+            path.add(((StringToken) this.lexer.next()).getString());
+        }
+
+        if (path.isEmpty()) {
+            throw this.lexer.createException("Expected redirect target but got " + this.lexer.peek());
+        }
+        if (this.lexer.peek() != Token.ConstantToken.SEMICOLON) {
+            throw this.lexer.createException("Redirect not ended with semicolon, got " + this.lexer.peek());
+        }
+        this.lexer.next();
+
+        return new NodeTemplate.Redirect(path, line, column, this.lexer.getSource());
+    }
+
+    private void parseChild(List<NodeTemplate> nodes) throws ParseException {
+        try {
+            Token token = this.lexer.peek();
+            if (isString(token, INCLUDE_DIRECTIVE)) {
+                this.lexer.next();
+                nodes.addAll(parseInclude());
+            } else {
+                nodes.add(parseNode());
+            }
+        } catch (ParseException e) {
+            if (!this.lexer.isValidating()) {
+                throw e;
+            }
+            report(e);
+            recover();
+        }
+    }
+
+    private List<NodeTemplate> parseInclude() throws ParseException {
+        Token token = this.lexer.next();
+        if (!(token instanceof StringToken)) {
+            throw this.lexer.createException("Expected string token for included file name but got " + token);
+        }
+        String name = ((StringToken) token).getString();
+
+        if (this.lexer.peek() != Token.ConstantToken.SEMICOLON) {
+            throw this.lexer.createException("Include directive not ended with semicolon, got " + this.lexer.peek());
+        }
+
+        List<NodeTemplate> fragment = this.fragments.load(name, this.lexer, this.includeStack);
+        this.lexer.next();
+        return fragment;
+    }
+
+    private static boolean isString(Token token, String string) {
+        return token instanceof StringToken && ((StringToken) token).getString().equals(string);
+    }
+
+    // '@key' is only a requirement after a node's name, so nodes can still be named '@key'
+    private static boolean isRequirement(Token token) {
+        if (!(token instanceof StringToken)) {
+            return false;
+        }
+        String string = ((StringToken) token).getString();
+        return string.length() > 1 && string.charAt(0) == REQUIREMENT_PREFIX;
     }
 
     private ArgumentType<?> parseArgumentType() throws ParseException {
@@ -105,10 +354,67 @@ class Parser<S> {
 
         for (ArgumentTypeParser parser : this.argumentTypeParsers) {
             if (parser.canParse(key[0], key[1])) {
-                return parser.parse(key[0], key[1], this.lexer);
+                return parser.parse(key[0], key[1], this.argumentTokens);
             }
         }
 
         throw this.lexer.createException("Unable to parse argument type: " + argumentType);
     }
+
+    /**
+     * The tokens seen by {@link ArgumentTypeParser}s, which end before a
+     * requirement, so that parsers reading optional parameters stop there.
+     */
+    private final class ArgumentTokenStream implements TokenStream {
+
+        private Token hideRequirement(Token token) {
+            return isRequirement(token) ? new RequirementToken(token.toString()) : token;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return Parser.this.lexer.hasNext();
+        }
+
+        @Override
+        public Token next() {
+            return hideRequirement(Parser.this.lexer.next());
+        }
+
+        @Override
+        public Token peek() {
+            return hideRequirement(Parser.this.lexer.peek());
+        }
+
+        @Override
+        public ParseException createException(String message) {
+            return Parser.this.lexer.createException(message);
+        }
+
+        @Override
+        public ParseException createException(Throwable cause) {
+            return Parser.this.lexer.createException(cause);
+        }
+
+        @Override
+        public ParseException createException(String message, Throwable cause) {
+            return Parser.this.lexer.createException(message, cause);
+        }
+    }
+
+    /**
+     * A requirement, as seen by an {@link ArgumentTypeParser}.
+     */
+    private static final class RequirementToken implements Token {
+        private final String requirement;
+
+        RequirementToken(String requirement) {
+            this.requirement = requirement;
+        }
+
+        @Override
+        public String toString() {
+            return this.requirement;
+        }
+    }
 }
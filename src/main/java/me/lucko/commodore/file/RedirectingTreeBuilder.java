@@ -0,0 +1,196 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+import com.mojang.brigadier.builder.ArgumentBuilder;
+import com.mojang.brigadier.tree.CommandNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a tree of {@link NodeTemplate}s containing redirects.
+ *
+ * <p>Redirect targets must exist before the redirecting node is built, and
+ * may be defined anywhere in the tree, so nodes are created on demand
+ * without their children. Children are only attached once every node has
+ * been created, in the order they were defined.</p>
+ *
+ * <p>Brigadier merges children with the same name into the first of them,
+ * so the tree is walked as a tree of {@link MergedNode}s, which
+ * mirror the nodes Brigadier will actually end up with.</p>
+ */
+final class RedirectingTreeBuilder<S> {
+    private final NodeTemplate root;
+    private final MergedNode rootNode;
+
+    RedirectingTreeBuilder(NodeTemplate root) {
+        this.root = root;
+        this.rootNode = new MergedNode(root);
+    }
+
+    CommandNode<S> build() throws ParseException {
+        CommandNode<S> node = getOrCreate(this.rootNode);
+        attachChildren(this.rootNode);
+        return node;
+    }
+
+    private void attachChildren(MergedNode merged) throws ParseException {
+        for (MergedNode child : merged.getChildren().values()) {
+            merged.node.addChild(getOrCreate(child));
+            attachChildren(child);
+        }
+    }
+
+    // gets the node for a merged node, creating it (without its children) if necessary
+    private CommandNode<S> getOrCreate(MergedNode merged) throws ParseException {
+        if (merged.node != null) {
+            return merged.node;
+        }
+
+        NodeTemplate template = merged.getTemplate();
+        ArgumentBuilder<S, ?> builder = template.createBuilder();
+        NodeTemplate.Redirect redirect = template.getRedirect();
+        if (redirect != null) {
+            if (merged.resolving) {
+                throw redirect.createException("Circular redirect: " + template.getName() + " -> " + redirect, true);
+            }
+            merged.resolving = true;
+            try {
+                builder.redirect(getOrCreate(resolve(redirect)));
+            } finally {
+                merged.resolving = false;
+            }
+        }
+        merged.node = builder.build();
+        return merged.node;
+    }
+
+    private MergedNode resolve(NodeTemplate.Redirect redirect) throws ParseException {
+        // check the target exists before walking the merged tree
+        findTarget(this.root, redirect, true);
+
+        List<String> path = redirect.getPath();
+        MergedNode target = this.rootNode;
+        for (int i = 1; i < path.size(); i++) {
+            target = target.getChildren().get(path.get(i));
+        }
+        return target;
+    }
+
+    /**
+     * Finds the target of a redirect.
+     *
+     * <p>Nodes along the path may have been defined more than once, so the
+     * target is returned as the list of templates which Brigadier will merge
+     * into a single node. The first of these defines the node itself.</p>
+     *
+     * @param root the root of the tree
+     * @param redirect the redirect
+     * @param writableStackTrace if the exception thrown on failure should have a stack trace
+     * @return the templates defining the target
+     * @throws ParseException if the target doesn't exist
+     */
+    static List<NodeTemplate> findTarget(NodeTemplate root, NodeTemplate.Redirect redirect, boolean writableStackTrace) throws ParseException {
+        List<String> path = redirect.getPath();
+        if (!path.get(0).equals(root.getName())) {
+            throw redirect.createException("Redirect target '" + redirect + "' does not start at the root node '" + root.getName() + "'", writableStackTrace);
+        }
+
+        List<NodeTemplate> targets = Collections.singletonList(root);
+        for (int i = 1; i < path.size(); i++) {
+            String name = path.get(i);
+            if (targets.size() == 1) {
+                targets = targets.get(0).getChildren(name);
+            } else {
+                List<NodeTemplate> merged = new ArrayList<>();
+                for (NodeTemplate target : targets) {
+                    merged.addAll(target.getChildren(name));
+                }
+                targets = merged;
+            }
+
+            if (targets.isEmpty()) {
+                throw redirect.createException("Unable to resolve redirect target '" + redirect + "': no such node '" + name + "'", writableStackTrace);
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * A node in the built tree, along with the templates merged into it.
+     */
+    private final class MergedNode {
+        private List<NodeTemplate> templates;
+        private Map<String, MergedNode> children = null;
+
+        private CommandNode<S> node = null;
+        private boolean resolving = false;
+
+        MergedNode(NodeTemplate template) {
+            this.templates = Collections.singletonList(template);
+        }
+
+        // the template which defines the node - any others only contribute children
+        NodeTemplate getTemplate() {
+            return this.templates.get(0);
+        }
+
+        void merge(NodeTemplate template) {
+            if (this.templates.size() == 1) {
+                this.templates = new ArrayList<>(this.templates);
+            }
+            this.templates.add(template);
+        }
+
+        Map<String, MergedNode> getChildren() {
+            if (this.children != null) {
+                return this.children;
+            }
+
+            Map<String, MergedNode> children = Collections.emptyMap();
+            for (NodeTemplate template : this.templates) {
+                for (NodeTemplate child : template.getChildren()) {
+                    if (children.isEmpty()) {
+                        children = new LinkedHashMap<>();
+                    }
+
+                    MergedNode existing = children.get(child.getName());
+                    if (existing == null) {
+                        children.put(child.getName(), new MergedNode(child));
+                    } else {
+                        existing.merge(child);
+                    }
+                }
+            }
+            this.children = children;
+            return children;
+        }
+    }
+}
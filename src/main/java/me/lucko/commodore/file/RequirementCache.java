@@ -0,0 +1,62 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Caches the predicates created by a {@link RequirementFactory}, so that
+ * nodes with the same requirement share a single predicate instance.
+ */
+class RequirementCache {
+    private final RequirementFactory factory;
+    private final Map<String, Predicate<Object>> requirements = new ConcurrentHashMap<>();
+
+    RequirementCache(RequirementFactory factory) {
+        this.factory = factory;
+    }
+
+    Predicate<Object> get(String key, TokenStream tokens) throws ParseException {
+        Predicate<Object> requirement = this.requirements.get(key);
+        if (requirement != null) {
+            return requirement;
+        }
+
+        if (this.factory == null) {
+            throw tokens.createException("Unable to use requirement '" + key + "': no requirement factory has been configured");
+        }
+
+        requirement = this.factory.createRequirement(key);
+        if (requirement == null) {
+            throw tokens.createException("Requirement factory returned null for '" + key + "'");
+        }
+
+        Predicate<Object> existing = this.requirements.putIfAbsent(key, requirement);
+        return existing != null ? existing : requirement;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+import java.util.function.Predicate;
+
+/**
+ * Creates the requirement predicates for the <code>@key</code> requirements
+ * declared on nodes.
+ *
+ * <p>Each distinct key is only passed to the factory once per
+ * {@link CommodoreFileReader}, and the resulting predicate is shared by
+ * every node with that requirement. Brigadier tests requirements very
+ * frequently, so factories may wish to memoize results per sender.</p>
+ *
+ * <p>The factory isn't used by {@link CommodoreFileReader#validate(java.io.Reader)}.</p>
+ */
+public interface RequirementFactory {
+
+    /**
+     * Creates a requirement predicate for the given key.
+     *
+     * <p>The predicate is passed command senders of whatever type the
+     * command nodes are parsed for.</p>
+     *
+     * @param key the requirement key, e.g. a permission
+     * @return the requirement
+     */
+    Predicate<Object> createRequirement(String key);
+
+}
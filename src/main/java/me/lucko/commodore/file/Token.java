@@ -34,7 +34,7 @@ public interface Token {
      * An enum of constant tokens.
      */
     enum ConstantToken implements Token {
-        OPEN_BRACKET, CLOSE_BRACKET, SEMICOLON, EOF
+        OPEN_BRACKET, CLOSE_BRACKET, SEMICOLON, ARROW, EOF
     }
 
     /**
@@ -50,5 +50,10 @@ public interface Token {
         public String getString() {
             return string;
         }
+
+        @Override
+        public String toString() {
+            return string;
+        }
     }
 }
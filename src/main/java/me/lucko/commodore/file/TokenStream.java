@@ -40,6 +40,9 @@ public interface TokenStream {
     /**
      * Gets and consumes the next token.
      *
+     * <p>The end of the input is marked by {@link Token.ConstantToken#EOF},
+     * which is returned again by every later call.</p>
+     *
      * @return the next token
      */
     Token next();
@@ -0,0 +1,120 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ArchiveTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static final Map<String, String> ENTRIES = new LinkedHashMap<>();
+    static {
+        ENTRIES.put("commands/", null);
+        ENTRIES.put("commands/time.commodore", "time { set { day; } add -> time set; }");
+        ENTRIES.put("commands/broken.commodore", "broken {\n  x brigadier:nope;\n}");
+        ENTRIES.put("commands/readme.txt", "not a command");
+        ENTRIES.put("weather.commodore", "weather { clear; }");
+    }
+
+    private static void writeZip(Path path, Map<String, ?> entries) throws IOException {
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(path))) {
+            for (Map.Entry<String, ?> entry : entries.entrySet()) {
+                out.putNextEntry(new ZipEntry(entry.getKey()));
+                Object contents = entry.getValue();
+                if (contents instanceof String) {
+                    out.write(((String) contents).getBytes(StandardCharsets.UTF_8));
+                } else if (contents instanceof byte[]) {
+                    out.write((byte[]) contents);
+                }
+                out.closeEntry();
+            }
+        }
+    }
+
+    private static void check(CommandPack<Object> pack) {
+        assertEquals(Arrays.asList("commands/time.commodore", "weather.commodore"), Arrays.asList(pack.getCommands().keySet().toArray()));
+        assertNotNull(pack.getCommands().get("commands/time.commodore").getChild("add").getRedirect());
+
+        assertTrue(pack.hasErrors());
+        Exception error = pack.getErrors().get("commands/broken.commodore");
+        assertNotNull(pack.getErrors().toString(), error);
+        assertTrue(error.getMessage(), error.getMessage().contains("at line 2 of commands/broken.commodore"));
+    }
+
+    @Test
+    public void testArchive() throws IOException {
+        Path archive = this.folder.getRoot().toPath().resolve("pack.zip");
+        writeZip(archive, ENTRIES);
+        check(CommodoreFileReader.INSTANCE.parseArchive(archive));
+    }
+
+    @Test
+    public void testArchiveInsideArchive() throws IOException {
+        Path inner = this.folder.getRoot().toPath().resolve("inner.zip");
+        writeZip(inner, ENTRIES);
+        Path outer = this.folder.getRoot().toPath().resolve("outer.jar");
+        Map<String, Object> outerEntries = new LinkedHashMap<>();
+        outerEntries.put("packs/inner.zip", Files.readAllBytes(inner));
+        writeZip(outer, outerEntries);
+
+        try (FileSystem fileSystem = FileSystems.newFileSystem(outer, (ClassLoader) null)) {
+            check(CommodoreFileReader.INSTANCE.parseArchive(fileSystem.getPath("packs", "inner.zip")));
+        }
+    }
+
+    @Test
+    public void testArchiveWithNoCommands() throws IOException {
+        Path archive = this.folder.getRoot().toPath().resolve("empty.zip");
+        try (OutputStream out = new ZipOutputStream(Files.newOutputStream(archive))) {
+            out.flush();
+        }
+        CommandPack<Object> pack = CommodoreFileReader.INSTANCE.parseArchive(archive);
+        assertTrue(pack.getCommands().isEmpty());
+        assertFalse(pack.hasErrors());
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+import com.mojang.brigadier.tree.ArgumentCommandNode;
+import com.mojang.brigadier.tree.CommandNode;
+import com.mojang.brigadier.tree.LiteralCommandNode;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class CommandTemplateTest {
+    private static final String INPUT = "kick @commands.kick { target brigadier:string single_word { reason brigadier:string greedy_phrase; } again -> kick; }";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final CommodoreFileReader reader = CommodoreFileReader.builder()
+            .withArgumentTypeParser(BrigadierArgumentTypeParser.INSTANCE)
+            .withRequirementFactory(key -> sender -> true)
+            .build();
+
+    @Test
+    public void testBuildForSenderTypes() throws IOException {
+        CommandTemplate template = this.reader.parseTemplate(new StringReader(INPUT));
+        LiteralCommandNode<String> forStrings = template.build();
+        LiteralCommandNode<Integer> forIntegers = template.build();
+
+        assertEquals("kick", template.getName());
+        assertNotSame(forStrings, forIntegers);
+        assertNotSame(forStrings.getChild("target"), forIntegers.getChild("target"));
+
+        // the argument types and requirements are shared, rather than copied
+        assertNotNull(forStrings.getRequirement());
+        assertSame(forStrings.getRequirement(), forIntegers.getRequirement());
+        assertSame(type(forStrings.getChild("target")), type(forIntegers.getChild("target")));
+        assertSame(type(forStrings.getChild("target").getChild("reason")), type(forIntegers.getChild("target").getChild("reason")));
+
+        // redirects stay within each tree
+        assertSame(forStrings, forStrings.getChild("again").getRedirect());
+        assertSame(forIntegers, forIntegers.getChild("again").getRedirect());
+    }
+
+    private static Object type(CommandNode<?> node) {
+        return ((ArgumentCommandNode<?, ?>) node).getType();
+    }
+
+    @Test
+    public void testParseTemplateFromInputStreamAndFile() throws IOException {
+        CommandTemplate fromStream = this.reader.parseTemplate(new ByteArrayInputStream(INPUT.getBytes(StandardCharsets.UTF_8)));
+        assertNotNull(fromStream.build().getChild("target"));
+
+        File file = this.folder.newFile("kick.commodore");
+        Files.write(file.toPath(), INPUT.getBytes(StandardCharsets.UTF_8));
+        CommandTemplate fromFile = this.reader.parseTemplate(file);
+        assertNotNull(fromFile.build().getChild("target"));
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+import com.mojang.brigadier.arguments.BoolArgumentType;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import com.mojang.brigadier.builder.RequiredArgumentBuilder;
+import com.mojang.brigadier.tree.LiteralCommandNode;
+import com.mojang.brigadier.tree.RootCommandNode;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CommandTreeStatsTest {
+
+    @Test
+    public void testCounts() throws IOException {
+        LiteralCommandNode<Object> node = CommodoreFileReader.INSTANCE.parse(new StringReader("root { a { x brigadier:bool; } b -> root a; }"));
+        CommandTreeStats stats = CommandTreeStats.of(node);
+
+        assertEquals(4, stats.getNodes());
+        assertEquals(3, stats.getLiteralNodes());
+        assertEquals(1, stats.getArgumentNodes());
+        assertEquals(1, stats.getRedirectNodes());
+        assertEquals(1, stats.getArgumentTypes());
+    }
+
+    @Test
+    public void testRootNode() throws IOException {
+        LiteralCommandNode<Object> node = CommodoreFileReader.INSTANCE.parse(new StringReader("root { a; }"));
+        RootCommandNode<Object> root = new RootCommandNode<>();
+        root.addChild(node);
+
+        CommandTreeStats rootStats = CommandTreeStats.of(root);
+        CommandTreeStats nodeStats = CommandTreeStats.of(node);
+        assertEquals(3, rootStats.getNodes());
+        assertEquals(2, rootStats.getLiteralNodes());
+        assertEquals(nodeStats.getNames(), rootStats.getNames());
+        assertTrue(rootStats.getEstimatedRetainedSize() > nodeStats.getEstimatedRetainedSize());
+    }
+
+    @Test
+    public void testDuplicateArgumentTypes() {
+        LiteralCommandNode<Object> node = LiteralArgumentBuilder.literal("root")
+                .then(LiteralArgumentBuilder.literal("a")
+                        .then(RequiredArgumentBuilder.argument("word", StringArgumentType.word()))
+                        .then(RequiredArgumentBuilder.argument("flag", BoolArgumentType.bool()))
+                        .then(RequiredArgumentBuilder.argument("count", IntegerArgumentType.integer(0, 10))))
+                .then(LiteralArgumentBuilder.literal("b")
+                        .then(RequiredArgumentBuilder.argument("word", StringArgumentType.word()))
+                        .then(RequiredArgumentBuilder.argument("flag", BoolArgumentType.bool()))
+                        .then(RequiredArgumentBuilder.argument("count", IntegerArgumentType.integer(0, 10))))
+                .then(LiteralArgumentBuilder.literal("c")
+                        .then(RequiredArgumentBuilder.argument("phrase", StringArgumentType.greedyString()))
+                        .then(RequiredArgumentBuilder.argument("count", IntegerArgumentType.integer(0, 20))))
+                .build();
+        CommandTreeStats stats = CommandTreeStats.of(node);
+
+        assertEquals(8, stats.getArgumentTypes());
+        assertEquals(3, stats.getDuplicateArgumentTypes());
+    }
+
+    @Test
+    public void testSharedBetweenTrees() {
+        StringArgumentType shared = StringArgumentType.word();
+        List<LiteralCommandNode<Object>> nodes = Arrays.asList(
+                LiteralArgumentBuilder.literal("a").then(RequiredArgumentBuilder.argument("x", shared)).build(),
+                LiteralArgumentBuilder.literal("b").then(RequiredArgumentBuilder.argument("x", shared)).build(),
+                LiteralArgumentBuilder.literal("c").then(RequiredArgumentBuilder.argument("x", StringArgumentType.word())).build()
+        );
+        List<CommandTreeStats> stats = CommandTreeStats.of(nodes);
+
+        assertEquals(1, stats.get(0).getArgumentTypes());
+        assertEquals(0, stats.get(1).getArgumentTypes());
+        assertEquals(1, stats.get(2).getDuplicateArgumentTypes());
+
+        CommandTreeStats total = CommandTreeStats.sum(stats);
+        assertEquals(6, total.getNodes());
+        assertEquals(2, total.getArgumentTypes());
+        assertEquals(1, total.getDuplicateArgumentTypes());
+    }
+
+    @Test
+    public void testNameSize() {
+        // names which aren't Latin-1 take two bytes per character on every JVM
+        long shortName = CommandTreeStats.of(LiteralArgumentBuilder.literal("\u4e00").build()).getEstimatedRetainedSize();
+        long longName = CommandTreeStats.of(LiteralArgumentBuilder.literal(repeat('\u4e00', 33)).build()).getEstimatedRetainedSize();
+        assertEquals(64, longName - shortName);
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
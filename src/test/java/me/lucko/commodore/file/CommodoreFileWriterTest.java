@@ -0,0 +1,298 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+import com.mojang.brigadier.arguments.BoolArgumentType;
+import com.mojang.brigadier.arguments.DoubleArgumentType;
+import com.mojang.brigadier.arguments.FloatArgumentType;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.arguments.LongArgumentType;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import com.mojang.brigadier.builder.RequiredArgumentBuilder;
+import com.mojang.brigadier.tree.ArgumentCommandNode;
+import com.mojang.brigadier.tree.CommandNode;
+import com.mojang.brigadier.tree.LiteralCommandNode;
+import com.mojang.brigadier.tree.RootCommandNode;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class CommodoreFileWriterTest {
+    private static final CommodoreFileWriter OMITTING_WRITER = CommodoreFileWriter.builder()
+            .withArgumentTypeWriter(BrigadierArgumentTypeWriter.INSTANCE)
+            .omitExternalRedirects()
+            .build();
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static String write(LiteralCommandNode<?> node) throws IOException {
+        StringBuilder out = new StringBuilder();
+        CommodoreFileWriter.INSTANCE.write(node, out);
+        return out.toString();
+    }
+
+    private static String roundTrip(String input) throws IOException {
+        String written = write(CommodoreFileReader.INSTANCE.parse(new StringReader(input)));
+        assertEquals("output should read back into the same tree", written, write(CommodoreFileReader.INSTANCE.parse(new StringReader(written))));
+        return written;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        String input = String.join("\n",
+                "time {",
+                "  set {",
+                "    day;",
+                "    value brigadier:integer 0;",
+                "    ticks brigadier:long min 24000;",
+                "  }",
+                "  query brigadier:string single_word;",
+                "  scale brigadier:double -1.5 1.5;",
+                "  enabled brigadier:bool;",
+                "  add -> time set;",
+                "}",
+                ""
+        );
+        assertEquals(input, roundTrip(input));
+    }
+
+    @Test
+    public void testRoundTripStructure() throws IOException {
+        LiteralCommandNode<Object> node = LiteralArgumentBuilder.literal("settings")
+                .then(LiteralArgumentBuilder.literal("set")
+                        .then(RequiredArgumentBuilder.argument("flag", BoolArgumentType.bool()))
+                        .then(RequiredArgumentBuilder.argument("count", IntegerArgumentType.integer(0, 64)))
+                        .then(RequiredArgumentBuilder.argument("seed", LongArgumentType.longArg(Long.MIN_VALUE, 0)))
+                        .then(RequiredArgumentBuilder.argument("speed", FloatArgumentType.floatArg(-0.5f)))
+                        .then(RequiredArgumentBuilder.argument("scale", DoubleArgumentType.doubleArg(1e-3, 1e3)))
+                        .then(RequiredArgumentBuilder.argument("name", StringArgumentType.greedyString())))
+                .build();
+        node.addChild(LiteralArgumentBuilder.literal("put").redirect(node.getChild("set")).build());
+        node.addChild(LiteralArgumentBuilder.literal("again").redirect(node).build());
+
+        StringBuilder written = new StringBuilder();
+        CommodoreFileWriter.INSTANCE.write(node, written);
+        LiteralCommandNode<Object> read = CommodoreFileReader.INSTANCE.parse(new StringReader(written.toString()));
+        assertSameStructure(node, read, node, read);
+    }
+
+    // compares node kinds, names, argument types and redirect targets
+    private static void assertSameStructure(CommandNode<?> expectedRoot, CommandNode<?> actualRoot, CommandNode<?> expected, CommandNode<?> actual) {
+        String description = expected.toString();
+        assertEquals(description, expected.getClass(), actual.getClass());
+        assertEquals(description, expected.getName(), actual.getName());
+        if (expected instanceof ArgumentCommandNode) {
+            assertEquals(description,
+                    CommandTreeStats.argumentTypeKey(((ArgumentCommandNode<?, ?>) expected).getType()),
+                    CommandTreeStats.argumentTypeKey(((ArgumentCommandNode<?, ?>) actual).getType()));
+        }
+        assertEquals(description, pathTo(expectedRoot, expected.getRedirect()), pathTo(actualRoot, actual.getRedirect()));
+
+        List<String> expectedNames = new ArrayList<>();
+        expected.getChildren().forEach(child -> expectedNames.add(child.getName()));
+        List<String> actualNames = new ArrayList<>();
+        actual.getChildren().forEach(child -> actualNames.add(child.getName()));
+        assertEquals(description, expectedNames, actualNames);
+        for (CommandNode<?> child : expected.getChildren()) {
+            assertSameStructure(expectedRoot, actualRoot, child, actual.getChild(child.getName()));
+        }
+    }
+
+    // gets the path from the root to a node, or null if it isn't in the tree
+    private static List<String> pathTo(CommandNode<?> root, CommandNode<?> target) {
+        if (target == null) {
+            return null;
+        }
+        Deque<String> path = new ArrayDeque<>();
+        path.addLast(root.getName());
+        return root == target || findPath(root, target, path) ? new ArrayList<>(path) : null;
+    }
+
+    private static boolean findPath(CommandNode<?> node, CommandNode<?> target, Deque<String> path) {
+        for (CommandNode<?> child : node.getChildren()) {
+            path.addLast(child.getName());
+            if (child == target || findPath(child, target, path)) {
+                return true;
+            }
+            path.removeLast();
+        }
+        return false;
+    }
+
+    @Test
+    public void testRoundTripNormalizesFormatting() throws IOException {
+        assertEquals("time {\n  day;\n}\n", roundTrip("/* comment */ time { // comment\n day; }"));
+    }
+
+    @Test
+    public void testUnrepresentableName() {
+        LiteralCommandNode<Object> node = LiteralArgumentBuilder.literal("time")
+                .then(LiteralArgumentBuilder.literal("set{"))
+                .build();
+        assertThrows(IllegalArgumentException.class, () -> write(node));
+    }
+
+    @Test
+    public void testUnknownArgumentType() {
+        LiteralCommandNode<Object> node = LiteralArgumentBuilder.literal("time")
+                .then(RequiredArgumentBuilder.argument("value", StringArgumentType.word()))
+                .build();
+        CommodoreFileWriter writer = CommodoreFileWriter.builder().build();
+        assertThrows(IllegalArgumentException.class, () -> writer.write(node, new StringBuilder()));
+    }
+
+    @Test
+    public void testRedirectToDispatcherRoot() throws IOException {
+        RootCommandNode<Object> root = new RootCommandNode<>();
+        LiteralCommandNode<Object> execute = LiteralArgumentBuilder.literal("execute")
+                .then(LiteralArgumentBuilder.literal("as")
+                        .then(RequiredArgumentBuilder.argument("target", StringArgumentType.word())
+                                .redirect(root)))
+                .then(LiteralArgumentBuilder.literal("run").redirect(root))
+                .build();
+        root.addChild(execute);
+
+        assertThrows(IllegalArgumentException.class, () -> write(execute));
+
+        StringBuilder written = new StringBuilder();
+        OMITTING_WRITER.write(execute, written);
+        assertEquals(String.join("\n",
+                "execute {",
+                "  as {",
+                "    target brigadier:string single_word; // redirect to the dispatcher root omitted - the target is outside of the written tree",
+                "  }",
+                "  run; // redirect to the dispatcher root omitted - the target is outside of the written tree",
+                "}",
+                ""
+        ), written.toString());
+
+        // the omitted redirects are read back in as normal nodes
+        LiteralCommandNode<Object> read = CommodoreFileReader.INSTANCE.parse(new StringReader(written.toString()));
+        assertNull(read.getChild("run").getRedirect());
+        assertNull(read.getChild("as").getChild("target").getRedirect());
+    }
+
+    @Test
+    public void testWriteAll() throws IOException {
+        RootCommandNode<Object> root = new RootCommandNode<>();
+        LiteralCommandNode<Object> teleport = LiteralArgumentBuilder.literal("teleport")
+                .then(RequiredArgumentBuilder.argument("target", StringArgumentType.word()))
+                .build();
+        root.addChild(teleport);
+        root.addChild(LiteralArgumentBuilder.literal("minecraft:tp").redirect(teleport).build());
+        root.addChild(LiteralArgumentBuilder.literal("time")
+                .then(LiteralArgumentBuilder.literal("set"))
+                .then(LiteralArgumentBuilder.literal("add").redirect(teleport.getChild("target")))
+                .build());
+
+        // the alias and time add redirect to another command
+        Path directory = this.folder.getRoot().toPath().resolve("commands");
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> CommodoreFileWriter.INSTANCE.writeAll(root, directory));
+        assertTrue(e.getMessage(), e.getMessage().contains("Redirect from 'minecraft:tp' to 'teleport'"));
+        assertFalse(Files.exists(directory));
+
+        Map<String, Path> files = OMITTING_WRITER.writeAll(root, directory);
+
+        assertEquals(Arrays.asList("teleport", "minecraft:tp", "time"), new ArrayList<>(files.keySet()));
+        assertEquals(directory.resolve("minecraft_tp.commodore"), files.get("minecraft:tp"));
+        for (Map.Entry<String, Path> file : files.entrySet()) {
+            assertEquals(file.getKey(), CommodoreFileReader.INSTANCE.parse(file.getValue()).getName());
+        }
+        assertEquals("minecraft:tp; // redirect to 'teleport' omitted - the target is outside of the written tree\n",
+                new String(Files.readAllBytes(files.get("minecraft:tp")), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testWriteAllFileNameClash() {
+        RootCommandNode<Object> root = new RootCommandNode<>();
+        root.addChild(LiteralArgumentBuilder.literal("a:b").build());
+        root.addChild(LiteralArgumentBuilder.literal("a_b").build());
+
+        Path directory = this.folder.getRoot().toPath().resolve("commands");
+        assertThrows(IllegalArgumentException.class, () -> CommodoreFileWriter.INSTANCE.writeAll(root, directory));
+        assertFalse(Files.exists(directory));
+    }
+
+    @Test
+    public void testWriteAllWritesNothingIfAnyCommandFails() {
+        RootCommandNode<Object> root = new RootCommandNode<>();
+        root.addChild(LiteralArgumentBuilder.literal("a").build());
+        root.addChild(LiteralArgumentBuilder.literal("b")
+                .then(LiteralArgumentBuilder.literal("set{"))
+                .build());
+
+        Path directory = this.folder.getRoot().toPath().resolve("commands");
+        assertThrows(IllegalArgumentException.class, () -> CommodoreFileWriter.INSTANCE.writeAll(root, directory));
+        assertFalse(Files.exists(directory));
+    }
+
+    @Test
+    public void testWriteAllChecksArgumentTypesFirst() {
+        RootCommandNode<Object> root = new RootCommandNode<>();
+        root.addChild(LiteralArgumentBuilder.literal("a").build());
+        root.addChild(LiteralArgumentBuilder.literal("b")
+                .then(RequiredArgumentBuilder.argument("value", StringArgumentType.word()))
+                .build());
+
+        Path directory = this.folder.getRoot().toPath().resolve("commands");
+        CommodoreFileWriter writer = CommodoreFileWriter.builder().build();
+        assertThrows(IllegalArgumentException.class, () -> writer.writeAll(root, directory));
+        assertFalse(Files.exists(directory));
+    }
+
+    @Test
+    public void testWriteLeavesFileIfNodeFails() throws IOException {
+        Path file = this.folder.newFile("time.commodore").toPath();
+        Files.write(file, "time;\n".getBytes(StandardCharsets.UTF_8));
+
+        LiteralCommandNode<Object> node = LiteralArgumentBuilder.literal("time")
+                .then(LiteralArgumentBuilder.literal("set{"))
+                .build();
+        assertThrows(IllegalArgumentException.class, () -> CommodoreFileWriter.INSTANCE.write(node, file));
+        assertEquals("time;\n", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+/**
+ * Generates valid commodore files with a given number of nodes.
+ *
+ * <p>Trees are filled depth first, so each node has up to {@code width}
+ * children until the requested number of nodes has been generated.</p>
+ */
+final class CorpusGenerator {
+    private static final String[] ARGUMENT_TYPES = {
+            "brigadier:bool",
+            "brigadier:string single_word",
+            "brigadier:string greedy_phrase",
+            "brigadier:integer",
+            "brigadier:integer 0 100",
+            "brigadier:long min 0",
+            "brigadier:float -1.5 1.5",
+            "brigadier:double 0"
+    };
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    private final int width;
+    private final int depth;
+    private final double argumentRatio;
+    private final double commentDensity;
+    private final double redirectRatio;
+    private final long seed;
+
+    private CorpusGenerator(Builder builder) {
+        this.width = builder.width;
+        this.depth = builder.depth;
+        this.argumentRatio = builder.argumentRatio;
+        this.commentDensity = builder.commentDensity;
+        this.redirectRatio = builder.redirectRatio;
+        this.seed = builder.seed;
+    }
+
+    /**
+     * Gets the largest number of nodes this generator can fit in a file.
+     *
+     * @return the capacity
+     */
+    long getCapacity() {
+        long capacity = 0;
+        long level = 1;
+        for (int i = 0; i <= this.depth && capacity < Integer.MAX_VALUE; i++) {
+            capacity += level;
+            level = Math.min(level * this.width, Integer.MAX_VALUE);
+        }
+        return Math.min(capacity, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Generates a file containing exactly {@code nodes} nodes, including the root.
+     *
+     * @param nodes the number of nodes
+     * @return the file
+     */
+    String generate(int nodes) {
+        if (nodes < 1 || nodes > getCapacity()) {
+            throw new IllegalArgumentException("Unable to fit " + nodes + " nodes into a tree of width " + this.width + " and depth " + this.depth);
+        }
+        return new Generation(nodes).run();
+    }
+
+    @Override
+    public String toString() {
+        return "width=" + this.width + ", depth=" + this.depth + ", arguments=" + this.argumentRatio +
+                ", comments=" + this.commentDensity + ", redirects=" + this.redirectRatio;
+    }
+
+    private final class Generation {
+        private final StringBuilder out;
+        private final Random random = new Random(CorpusGenerator.this.seed);
+        private final Deque<String> path = new ArrayDeque<>();
+        private int remaining;
+
+        Generation(int nodes) {
+            this.out = new StringBuilder(nodes * 32);
+            this.remaining = nodes;
+        }
+
+        String run() {
+            this.remaining--;
+            this.out.append("root");
+            this.path.addLast("root");
+            if (this.remaining > 0) {
+                this.out.append(" {\n");
+                children(1);
+                this.out.append("}\n");
+            } else {
+                this.out.append(";\n");
+            }
+            return this.out.toString();
+        }
+
+        private void children(int level) {
+            for (int i = 0; i < CorpusGenerator.this.width && this.remaining > 0; i++) {
+                this.remaining--;
+                comment(level);
+                indent(level);
+
+                boolean argument = this.random.nextDouble() < CorpusGenerator.this.argumentRatio;
+                String name = (argument ? "a" : "l") + i;
+                this.out.append(name);
+                if (argument) {
+                    this.out.append(' ').append(ARGUMENT_TYPES[this.random.nextInt(ARGUMENT_TYPES.length)]);
+                }
+
+                if (level < CorpusGenerator.this.depth && this.remaining > 0) {
+                    this.out.append(" {\n");
+                    this.path.addLast(name);
+                    children(level + 1);
+                    this.path.removeLast();
+                    indent(level);
+                    this.out.append("}\n");
+                } else if (this.random.nextDouble() < CorpusGenerator.this.redirectRatio) {
+                    // redirect back to the parent, which always exists and never redirects itself
+                    this.out.append(" -> ").append(String.join(" ", this.path)).append(";\n");
+                } else {
+                    this.out.append(";\n");
+                }
+            }
+        }
+
+        private void comment(int level) {
+            if (this.random.nextDouble() >= CorpusGenerator.this.commentDensity) {
+                return;
+            }
+            indent(level);
+            if (this.random.nextBoolean()) {
+                this.out.append("// comment ").append(this.remaining).append('\n');
+            } else {
+                this.out.append("/* comment\n");
+                indent(level);
+                this.out.append("   ").append(this.remaining).append(" */\n");
+            }
+        }
+
+        private void indent(int level) {
+            for (int i = 0; i < level; i++) {
+                this.out.append("  ");
+            }
+        }
+    }
+
+    static final class Builder {
+        private int width = 10;
+        private int depth = 6;
+        private double argumentRatio = 0.25;
+        private double commentDensity = 0.1;
+        private double redirectRatio = 0;
+        private long seed = 0;
+
+        private Builder() {
+
+        }
+
+        Builder withWidth(int width) {
+            this.width = width;
+            return this;
+        }
+
+        Builder withDepth(int depth) {
+            this.depth = depth;
+            return this;
+        }
+
+        // the fraction of nodes (other than the root) which are argument nodes
+        Builder withArgumentRatio(double argumentRatio) {
+            this.argumentRatio = argumentRatio;
+            return this;
+        }
+
+        // the chance of a comment before each node
+        Builder withCommentDensity(double commentDensity) {
+            this.commentDensity = commentDensity;
+            return this;
+        }
+
+        // the fraction of leaf nodes which redirect
+        Builder withRedirectRatio(double redirectRatio) {
+            this.redirectRatio = redirectRatio;
+            return this;
+        }
+
+        Builder withSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        CorpusGenerator build() {
+            if (this.width < 1 || this.depth < 0) {
+                throw new IllegalArgumentException("width must be positive and depth must not be negative");
+            }
+            return new CorpusGenerator(this);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class FragmentResolverTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private Path fragments;
+    private Path secret;
+
+    @Before
+    public void setup() throws IOException {
+        this.fragments = this.folder.newFolder("fragments").toPath();
+        Files.createDirectories(this.fragments.resolve("sub"));
+        Files.write(this.fragments.resolve("sub").resolve("coords"), Collections.singletonList("x;"), StandardCharsets.UTF_8);
+        this.secret = this.folder.getRoot().toPath().resolve("secret");
+        Files.write(this.secret, Collections.singletonList("password"), StandardCharsets.UTF_8);
+    }
+
+    private static String read(FragmentResolver resolver, String name) throws IOException {
+        try (BufferedReader reader = new BufferedReader(resolver.open(name))) {
+            return reader.readLine();
+        }
+    }
+
+    @Test
+    public void testDirectory() throws IOException {
+        FragmentResolver resolver = FragmentResolver.directory(this.fragments);
+        assertEquals("x;", read(resolver, "sub/coords"));
+        assertEquals("x;", read(resolver, "sub/../sub/./coords"));
+    }
+
+    @Test
+    public void testDirectoryRejectsParentPaths() {
+        FragmentResolver resolver = FragmentResolver.directory(this.fragments);
+        assertThrows(AccessDeniedException.class, () -> resolver.open("../secret"));
+        assertThrows(AccessDeniedException.class, () -> resolver.open("sub/../../secret"));
+    }
+
+    @Test
+    public void testDirectoryRejectsAbsolutePaths() {
+        FragmentResolver resolver = FragmentResolver.directory(this.fragments);
+        assertThrows(AccessDeniedException.class, () -> resolver.open(this.secret.toAbsolutePath().toString()));
+    }
+
+    @Test
+    public void testRelativeDirectory() throws IOException {
+        Path relative = Paths.get("").toAbsolutePath().relativize(this.fragments.toAbsolutePath());
+        FragmentResolver resolver = FragmentResolver.directory(relative);
+        assertEquals("x;", read(resolver, "sub/coords"));
+        assertThrows(AccessDeniedException.class, () -> resolver.open("../secret"));
+    }
+
+    @Test
+    public void testIncludeOutsideDirectory() {
+        CommodoreFileReader reader = CommodoreFileReader.builder()
+                .withArgumentTypeParser(BrigadierArgumentTypeParser.INSTANCE)
+                .withFragmentResolver(FragmentResolver.directory(this.fragments))
+                .build();
+
+        IOException e = assertThrows(IOException.class, () -> reader.parse(new StringReader("root { #include ../secret; }")));
+        assertTrue(e.getMessage(), e.getMessage().contains("outside of the fragment directory"));
+        assertFalse(e.getMessage(), e.getMessage().contains("password"));
+    }
+
+    @Test
+    public void testClassLoaderRejectsParentPaths() {
+        FragmentResolver resolver = FragmentResolver.classLoader(getClass().getClassLoader(), "commands/");
+        assertThrows(AccessDeniedException.class, () -> resolver.open("../secret"));
+        assertThrows(AccessDeniedException.class, () -> resolver.open("a/../../secret"));
+        assertThrows(AccessDeniedException.class, () -> resolver.open("/secret"));
+    }
+
+    @Test
+    public void testClassLoader() throws IOException {
+        FragmentResolver resolver = FragmentResolver.classLoader(getClass().getClassLoader(), "me/lucko/commodore/file/");
+        try (Reader reader = resolver.open("FragmentResolverTest.class")) {
+            assertTrue(reader.read() != -1);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+import com.mojang.brigadier.tree.ArgumentCommandNode;
+import com.mojang.brigadier.tree.CommandNode;
+import com.mojang.brigadier.tree.LiteralCommandNode;
+
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class IncludeTest {
+    private final Map<String, String> files = new HashMap<>();
+    private final CommodoreFileReader reader = CommodoreFileReader.builder()
+            .withArgumentTypeParser(BrigadierArgumentTypeParser.INSTANCE)
+            .withFragmentResolver(name -> {
+                String file = this.files.get(name);
+                if (file == null) {
+                    throw new FileNotFoundException(name);
+                }
+                return new StringReader(file);
+            })
+            .build();
+
+    @Test
+    public void testInclude() throws IOException {
+        this.files.put("coords", "x brigadier:integer { y brigadier:integer; }");
+        LiteralCommandNode<Object> node = this.reader.parse(new StringReader("tp { #include coords; to { #include coords; } }"));
+
+        assertNotNull(node.getChild("x").getChild("y"));
+        assertNotNull(node.getChild("to").getChild("x").getChild("y"));
+    }
+
+    @Test
+    public void testFragmentsAreShared() throws IOException {
+        this.files.put("coords", "x brigadier:integer;");
+        LiteralCommandNode<Object> first = this.reader.parse(new StringReader("a { #include coords; }"));
+        LiteralCommandNode<Object> second = this.reader.parse(new StringReader("b { #include coords; }"));
+
+        assertSame(
+                ((ArgumentCommandNode<?, ?>) first.getChild("x")).getType(),
+                ((ArgumentCommandNode<?, ?>) second.getChild("x")).getType()
+        );
+    }
+
+    @Test
+    public void testCircularInclude() {
+        this.files.put("a", "a { #include b; }");
+        this.files.put("b", "b { #include a; }");
+
+        IOException e = assertThrows(IOException.class, () -> this.reader.parse(new StringReader("root { #include a; }")));
+        assertTrue(e.getMessage(), e.getMessage().contains("Circular include: a -> b -> a"));
+    }
+
+    @Test
+    public void testSelfInclude() {
+        this.files.put("a", "a { #include a; }");
+
+        IOException e = assertThrows(IOException.class, () -> this.reader.parse(new StringReader("root { #include a; }")));
+        assertTrue(e.getMessage(), e.getMessage().contains("Circular include: a -> a"));
+    }
+
+    @Test
+    public void testMissingInclude() {
+        IOException e = assertThrows(IOException.class, () -> this.reader.parse(new StringReader("root { #include missing; }")));
+        assertTrue(e.getMessage(), e.getMessage().contains("Unable to read included file 'missing'"));
+    }
+
+    @Test
+    public void testNoResolver() {
+        IOException e = assertThrows(IOException.class, () -> CommodoreFileReader.INSTANCE.parse(new StringReader("root { #include a; }")));
+        assertTrue(e.getMessage(), e.getMessage().contains("no fragment resolver has been configured"));
+    }
+
+    @Test
+    public void testErrorInInclude() {
+        this.files.put("coords", "x brigadier:integer;\ny brigadier:nope;");
+
+        IOException e = assertThrows(IOException.class, () -> this.reader.parse(new StringReader("tp {\n  #include coords;\n}")));
+        ParseException error = (ParseException) e.getCause();
+        assertEquals("Error in included file 'coords': Unable to parse argument type: brigadier:nope (at line 2)", error.getMessage());
+
+        // the location in the fragment is kept by the cause
+        ParseException cause = (ParseException) error.getCause();
+        assertEquals("coords", cause.getSource());
+        assertEquals(2, cause.getLine());
+    }
+
+    @Test
+    public void testIncludeNamesAreNormalized() throws IOException {
+        this.files.put("coords", "x brigadier:integer;");
+        this.files.put("sub/coords", "y brigadier:integer;");
+        LiteralCommandNode<Object> node = this.reader.parse(new StringReader("tp { a { #include coords; } b { #include ./coords; } c { #include sub/../coords; } d { #include sub//./coords; } }"));
+
+        CommandNode<Object> type = node.getChild("a").getChild("x");
+        assertSame(((ArgumentCommandNode<?, ?>) type).getType(), ((ArgumentCommandNode<?, ?>) node.getChild("b").getChild("x")).getType());
+        assertSame(((ArgumentCommandNode<?, ?>) type).getType(), ((ArgumentCommandNode<?, ?>) node.getChild("c").getChild("x")).getType());
+        assertNotNull(node.getChild("d").getChild("y"));
+    }
+
+    @Test
+    public void testCircularIncludeThroughRelativeName() {
+        this.files.put("sub/a", "a { #include sub/../sub/./a; }");
+
+        IOException e = assertThrows(IOException.class, () -> this.reader.parse(new StringReader("root { #include sub/a; }")));
+        assertTrue(e.getMessage(), e.getMessage().contains("Circular include: sub/a -> sub/a"));
+    }
+
+    @Test
+    public void testValidateCircularInclude() throws IOException {
+        this.files.put("a", "a { #include a; }");
+
+        // reported at the include which closes the cycle
+        List<Diagnostic> diagnostics = this.reader.validate(new StringReader("root {\n  #include a;\n}"));
+        assertEquals(diagnostics.toString(), 1, diagnostics.size());
+        assertEquals("a", diagnostics.get(0).getSource());
+        assertEquals(1, diagnostics.get(0).getLine());
+        assertTrue(diagnostics.get(0).getMessage(), diagnostics.get(0).getMessage().startsWith("Circular include: a -> a"));
+    }
+
+    @Test
+    public void testValidateReportsEveryProblemInFragment() throws IOException {
+        this.files.put("broken", "a brigadier:nope;\nb;\nc brigadier:integer x;\n");
+
+        List<Diagnostic> diagnostics = this.reader.validate(new StringReader("root {\n\n  #include broken;\n  d brigadier:nope;\n}"));
+        assertEquals(diagnostics.toString(), 3, diagnostics.size());
+        assertEquals("broken:1", diagnostics.get(0).getSource() + ":" + diagnostics.get(0).getLine());
+        assertEquals("broken:3", diagnostics.get(1).getSource() + ":" + diagnostics.get(1).getLine());
+        assertEquals("null:4", diagnostics.get(2).getSource() + ":" + diagnostics.get(2).getLine());
+    }
+
+    @Test
+    public void testValidateReportsFragmentOnce() throws IOException {
+        this.files.put("broken", "a brigadier:nope;");
+
+        List<Diagnostic> diagnostics = this.reader.validate(new StringReader("root { x { #include broken; } y { #include broken; } }"));
+        assertEquals(diagnostics.toString(), 1, diagnostics.size());
+    }
+
+    @Test
+    public void testBrokenFragmentsAreNotCached() throws IOException {
+        this.files.put("broken", "a brigadier:nope;\nb;");
+
+        assertEquals(1, this.reader.validate(new StringReader("root { #include broken; }")).size());
+        assertEquals(1, this.reader.validate(new StringReader("root { #include broken; }")).size());
+        assertThrows(IOException.class, () -> this.reader.parse(new StringReader("root { #include broken; }")));
+    }
+
+    @Test
+    public void testValidateNestedFragment() throws IOException {
+        this.files.put("outer", "o { #include inner; }");
+        this.files.put("inner", "i brigadier:nope;");
+
+        List<Diagnostic> diagnostics = this.reader.validate(new StringReader("root { #include outer; #include outer; }"));
+        assertEquals(diagnostics.toString(), 1, diagnostics.size());
+        assertEquals("inner", diagnostics.get(0).getSource());
+    }
+}
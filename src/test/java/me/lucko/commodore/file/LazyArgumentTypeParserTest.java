@@ -0,0 +1,139 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+import com.mojang.brigadier.arguments.ArgumentType;
+import com.mojang.brigadier.arguments.BoolArgumentType;
+import com.mojang.brigadier.tree.ArgumentCommandNode;
+import com.mojang.brigadier.tree.LiteralCommandNode;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class LazyArgumentTypeParserTest {
+    private static final AtomicInteger CREATED_PARSERS = new AtomicInteger();
+
+    private CommodoreFileReader reader;
+
+    @Before
+    public void setup() {
+        CREATED_PARSERS.set(0);
+        this.reader = CommodoreFileReader.builder()
+                .withArgumentTypeParser(BrigadierArgumentTypeParser.INSTANCE)
+                .withDiscoveredArgumentTypeParsers(LazyArgumentTypeParserTest.class.getClassLoader())
+                .build();
+    }
+
+    @Test
+    public void testParserCreatedOnFirstUse() throws IOException {
+        assertEquals(0, CREATED_PARSERS.get());
+
+        // other namespaces don't need the parser
+        this.reader.parse(new StringReader("time { value brigadier:integer; }"));
+        assertEquals(0, CREATED_PARSERS.get());
+
+        LiteralCommandNode<Object> node = this.reader.parse(new StringReader("toggle { value test:flag; }"));
+        assertTrue(((ArgumentCommandNode<?, ?>) node.getChild("value")).getType() instanceof BoolArgumentType);
+        assertEquals(1, CREATED_PARSERS.get());
+    }
+
+    @Test
+    public void testParserCreatedOnce() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            this.reader.parse(new StringReader("toggle" + i + " { value test:flag; }"));
+        }
+        assertEquals(1, CREATED_PARSERS.get());
+    }
+
+    @Test
+    public void testParserCreatedOnceAcrossThreads() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<LiteralCommandNode<Object>>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                String input = "toggle" + i + " { value test:flag; }";
+                Callable<LiteralCommandNode<Object>> task = () -> {
+                    start.await();
+                    return this.reader.parse(new StringReader(input));
+                };
+                results.add(executor.submit(task));
+            }
+            start.countDown();
+            for (Future<LiteralCommandNode<Object>> result : results) {
+                assertNotNull(result.get().getChild("value"));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, CREATED_PARSERS.get());
+    }
+
+    /**
+     * Provides a parser for the 'test' namespace, counting how many times it is created.
+     */
+    public static final class CountingProvider implements ArgumentTypeParserProvider {
+
+        @Override
+        public Set<String> getNamespaces() {
+            return Collections.singleton("test");
+        }
+
+        @Override
+        public ArgumentTypeParser createParser() {
+            CREATED_PARSERS.incrementAndGet();
+            return new ArgumentTypeParser() {
+                @Override
+                public boolean canParse(String namespace, String name) {
+                    return namespace.equals("test") && name.equals("flag");
+                }
+
+                @Override
+                public ArgumentType<?> parse(String namespace, String name, TokenStream tokenStream) {
+                    return BoolArgumentType.bool();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+import com.mojang.brigadier.tree.CommandNode;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the cost of reading commodore files grows linearly with their size.
+ *
+ * <p>For each shape of input, files of 10 up to 1,000,000 nodes are generated
+ * and read. The CPU time used and bytes allocated by the reading thread, and
+ * the estimated retained size of the parsed tree, are then compared per node
+ * between each size and the next, ten times larger, one. Work in the lexer,
+ * parser or tree builder which grows faster than the input shows up as a
+ * per node cost which grows by close to ten times at each step.</p>
+ *
+ * <p>Only ratios are checked, so that the suite doesn't depend on the speed
+ * of the machine or the garbage collector in use. This suite is excluded from
+ * the normal test run - use the {@code scaleTest} task to run it.</p>
+ */
+public class ParserScaleTest {
+    private static final int[] SIZES = {10, 100, 1_000, 10_000, 100_000, 1_000_000};
+
+    // how much more each node may cost than in an input a tenth of the size - a
+    // quadratic step would cost ten times as much, and smaller inputs fit in caches
+    // which larger inputs don't
+    private static final double MAX_TIME_GROWTH = 4.0;
+    private static final double MAX_ALLOCATION_GROWTH = 1.5;
+    private static final double MAX_RETAINED_GROWTH = 1.5;
+
+    // each measurement covers at least this many nodes, by repeating smaller inputs
+    private static final int NODES_PER_MEASUREMENT = 100_000;
+    private static final int MEASUREMENTS = 3;
+
+    private static com.sun.management.ThreadMXBean threads;
+
+    @BeforeClass
+    public static void setupThreadCounters() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue("thread counters are not supported", bean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue("thread allocation counters are not supported", threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        Assume.assumeTrue("thread CPU time is not supported", threads.isCurrentThreadCpuTimeSupported());
+        threads.setThreadCpuTimeEnabled(true);
+    }
+
+    @Test
+    public void testBalanced() throws IOException {
+        check(CorpusGenerator.builder().build());
+    }
+
+    @Test
+    public void testWide() throws IOException {
+        check(CorpusGenerator.builder().withWidth(1_000).withDepth(2).build());
+    }
+
+    @Test
+    public void testDeep() throws IOException {
+        check(CorpusGenerator.builder().withWidth(2).withDepth(20).build());
+    }
+
+    @Test
+    public void testArguments() throws IOException {
+        check(CorpusGenerator.builder().withArgumentRatio(1).build());
+    }
+
+    @Test
+    public void testComments() throws IOException {
+        check(CorpusGenerator.builder().withCommentDensity(1).build());
+    }
+
+    @Test
+    public void testRedirects() throws IOException {
+        check(CorpusGenerator.builder().withRedirectRatio(0.5).build());
+    }
+
+    private static void check(CorpusGenerator generator) throws IOException {
+        Measurement previous = null;
+        for (int size : SIZES) {
+            String input = generator.generate(size);
+            Measurement measurement = Measurement.measure(generator, input, size);
+
+            if (previous != null) {
+                String description = generator + ": " + previous + " -> " + measurement;
+                assertTrue(description, measurement.parseNanos <= previous.parseNanos * MAX_TIME_GROWTH);
+                assertTrue(description, measurement.validateNanos <= previous.validateNanos * MAX_TIME_GROWTH);
+                assertTrue(description, measurement.allocatedBytes <= previous.allocatedBytes * MAX_ALLOCATION_GROWTH);
+                assertTrue(description, measurement.retainedBytes <= previous.retainedBytes * MAX_RETAINED_GROWTH);
+            }
+            previous = measurement;
+        }
+    }
+
+    private static int countNodes(CommandNode<?> node) {
+        int count = 1;
+        for (CommandNode<?> child : node.getChildren()) {
+            count += countNodes(child);
+        }
+        return count;
+    }
+
+    /**
+     * The cost per node of reading an input.
+     */
+    private static final class Measurement {
+        private final int size;
+        private final double parseNanos;
+        private final double validateNanos;
+        private final double allocatedBytes;
+        private final double retainedBytes;
+
+        private Measurement(int size, double parseNanos, double validateNanos, double allocatedBytes, double retainedBytes) {
+            this.size = size;
+            this.parseNanos = parseNanos;
+            this.validateNanos = validateNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.retainedBytes = retainedBytes;
+        }
+
+        static Measurement measure(CorpusGenerator generator, String input, int size) throws IOException {
+            CommandNode<Object> node = CommodoreFileReader.INSTANCE.parse(new StringReader(input));
+            assertEquals(generator + ": nodes in a file of " + size, size, countNodes(node));
+            List<Diagnostic> diagnostics = CommodoreFileReader.INSTANCE.validate(new StringReader(input));
+            assertTrue(generator + ": " + diagnostics, diagnostics.isEmpty());
+
+            // the retained size is estimated from the tree, as measuring the heap relies on the garbage collector
+            long retainedBytes = CommandTreeStats.of(node).getEstimatedRetainedSize();
+
+            int runs = Math.max(1, NODES_PER_MEASUREMENT / size);
+            long thread = Thread.currentThread().getId();
+            long parseNanos = Long.MAX_VALUE;
+            long validateNanos = Long.MAX_VALUE;
+            long allocatedBytes = Long.MAX_VALUE;
+            for (int i = 0; i < MEASUREMENTS; i++) {
+                // CPU time of this thread leaves out garbage collection, which isn't done by this thread
+                long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+                long start = threads.getCurrentThreadCpuTime();
+                for (int run = 0; run < runs; run++) {
+                    CommodoreFileReader.INSTANCE.parse(new StringReader(input));
+                }
+                parseNanos = Math.min(parseNanos, threads.getCurrentThreadCpuTime() - start);
+                allocatedBytes = Math.min(allocatedBytes, threads.getThreadAllocatedBytes(thread) - allocatedBefore);
+
+                start = threads.getCurrentThreadCpuTime();
+                for (int run = 0; run < runs; run++) {
+                    CommodoreFileReader.INSTANCE.validate(new StringReader(input));
+                }
+                validateNanos = Math.min(validateNanos, threads.getCurrentThreadCpuTime() - start);
+            }
+
+            double nodes = (double) runs * size;
+            return new Measurement(size, parseNanos / nodes, validateNanos / nodes, allocatedBytes / nodes, (double) retainedBytes / size);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[%d nodes: parse=%.0fns validate=%.0fns allocated=%.0fB retained=%.0fB per node]",
+                    this.size, this.parseNanos, this.validateNanos, this.allocatedBytes, this.retainedBytes);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+import com.mojang.brigadier.tree.CommandNode;
+import com.mojang.brigadier.tree.LiteralCommandNode;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class RedirectTest {
+
+    private static LiteralCommandNode<Object> parse(String input) throws IOException {
+        return CommodoreFileReader.INSTANCE.parse(new StringReader(input));
+    }
+
+    private static List<String> names(CommandNode<?> node) {
+        List<String> names = new ArrayList<>();
+        for (CommandNode<?> child : node.getChildren()) {
+            names.add(child.getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void testBackwardRedirect() throws IOException {
+        LiteralCommandNode<Object> node = parse("root { teleport { t brigadier:integer; } tp -> root teleport; }");
+        assertSame(node.getChild("teleport"), node.getChild("tp").getRedirect());
+    }
+
+    @Test
+    public void testForwardRedirect() throws IOException {
+        LiteralCommandNode<Object> node = parse("root { tp -> root teleport; teleport { t brigadier:integer; } }");
+        CommandNode<Object> teleport = node.getChild("teleport");
+        assertSame(teleport, node.getChild("tp").getRedirect());
+        assertSame(teleport.getChild("t"), node.getChild("teleport").getChild("t"));
+    }
+
+    @Test
+    public void testForwardRedirectKeepsOrder() throws IOException {
+        LiteralCommandNode<Object> node = parse("root { tp -> root teleport; teleport { t brigadier:integer; } }");
+        assertEquals(Arrays.asList("tp", "teleport"), names(node));
+
+        StringBuilder out = new StringBuilder();
+        CommodoreFileWriter.INSTANCE.write(node, out);
+        assertEquals("root {\n  tp -> root teleport;\n  teleport {\n    t brigadier:integer;\n  }\n}\n", out.toString());
+    }
+
+    @Test
+    public void testNestedForwardRedirectKeepsOrder() throws IOException {
+        LiteralCommandNode<Object> node = parse("root { a { b -> root c e; } c { d; e; f; } }");
+        assertEquals(Arrays.asList("a", "c"), names(node));
+        assertEquals(Arrays.asList("d", "e", "f"), names(node.getChild("c")));
+    }
+
+    @Test
+    public void testRedirectIntoMergedNode() throws IOException {
+        LiteralCommandNode<Object> node = parse("root { b -> root a z; a; a { z; } }");
+        assertEquals(Arrays.asList("b", "a"), names(node));
+        assertSame(node.getChild("a").getChild("z"), node.getChild("b").getRedirect());
+    }
+
+    @Test
+    public void testRedirectIntoIncludedNode() throws IOException {
+        CommodoreFileReader reader = CommodoreFileReader.builder()
+                .withArgumentTypeParser(BrigadierArgumentTypeParser.INSTANCE)
+                .withFragmentResolver(name -> new StringReader("a { y; }"))
+                .build();
+
+        LiteralCommandNode<Object> node = reader.parse(new StringReader("root { a { x; } #include a; b -> root a y; }"));
+        assertEquals(Arrays.asList("x", "y"), names(node.getChild("a")));
+        assertSame(node.getChild("a").getChild("y"), node.getChild("b").getRedirect());
+    }
+
+    @Test
+    public void testNestedForwardRedirect() throws IOException {
+        LiteralCommandNode<Object> node = parse("root { a { b -> root c d; } c { d { e; } } }");
+        assertSame(node.getChild("c").getChild("d"), node.getChild("a").getChild("b").getRedirect());
+        assertNull(node.getChild("c").getChild("d").getRedirect());
+    }
+
+    @Test
+    public void testRedirectToRoot() throws IOException {
+        LiteralCommandNode<Object> node = parse("root { again -> root; }");
+        assertSame(node, node.getChild("again").getRedirect());
+    }
+
+    @Test
+    public void testRedirectChain() throws IOException {
+        LiteralCommandNode<Object> node = parse("root { a -> root b; b -> root c; c { d; } }");
+        assertSame(node.getChild("b"), node.getChild("a").getRedirect());
+        assertSame(node.getChild("c"), node.getChild("b").getRedirect());
+    }
+
+    @Test
+    public void testMissingTarget() {
+        IOException e = assertThrows(IOException.class, () -> parse("root { a -> root b; }"));
+        assertTrue(e.getMessage(), e.getMessage().contains("no such node 'b'"));
+    }
+
+    @Test
+    public void testTargetOutsideTree() {
+        IOException e = assertThrows(IOException.class, () -> parse("root { a -> other; }"));
+        assertTrue(e.getMessage(), e.getMessage().contains("does not start at the root node"));
+    }
+
+    @Test
+    public void testCircularRedirect() {
+        IOException e = assertThrows(IOException.class, () -> parse("root { a -> root b; b -> root a; }"));
+        assertTrue(e.getMessage(), e.getMessage().contains("Circular redirect"));
+    }
+}
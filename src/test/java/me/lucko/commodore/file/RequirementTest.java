@@ -0,0 +1,153 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.tree.ArgumentCommandNode;
+import com.mojang.brigadier.tree.CommandNode;
+import com.mojang.brigadier.tree.LiteralCommandNode;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class RequirementTest {
+    private final List<String> createdKeys = new ArrayList<>();
+    private final CommodoreFileReader reader = CommodoreFileReader.builder()
+            .withArgumentTypeParser(BrigadierArgumentTypeParser.INSTANCE)
+            .withFragmentResolver(name -> new StringReader("shared @commands.shared;"))
+            .withRequirementFactory(key -> {
+                this.createdKeys.add(key);
+                return new KeyPredicate(key);
+            })
+            .build();
+
+    private LiteralCommandNode<Object> parse(String input) throws IOException {
+        return this.reader.parse(new StringReader(input));
+    }
+
+    private static String key(CommandNode<?> node) {
+        Predicate<?> requirement = node.getRequirement();
+        return requirement instanceof KeyPredicate ? ((KeyPredicate) requirement).key : null;
+    }
+
+    @Test
+    public void testRequirement() throws IOException {
+        LiteralCommandNode<Object> node = parse("kick @commands.kick { target brigadier:string single_word @commands.kick.target; reason; }");
+
+        assertEquals("commands.kick", key(node));
+        assertEquals("commands.kick.target", key(node.getChild("target")));
+        assertNull(key(node.getChild("reason")));
+    }
+
+    @Test
+    public void testRequirementAfterOptionalParameters() throws IOException {
+        LiteralCommandNode<Object> node = parse("root { a brigadier:integer @perm; b brigadier:integer 5 @perm; c brigadier:double @perm { d; } }");
+
+        assertEquals("perm", key(node.getChild("a")));
+        assertEquals(IntegerArgumentType.integer(), ((ArgumentCommandNode<?, ?>) node.getChild("a")).getType());
+        assertEquals("perm", key(node.getChild("b")));
+        assertEquals(IntegerArgumentType.integer(5), ((ArgumentCommandNode<?, ?>) node.getChild("b")).getType());
+        assertEquals("perm", key(node.getChild("c")));
+        assertNotNull(node.getChild("c").getChild("d"));
+    }
+
+    @Test
+    public void testNodesNamedLikeRequirements() throws IOException {
+        LiteralCommandNode<Object> node = parse("@a { @b @perm; @c; again -> @a @b; }");
+
+        assertEquals("@a", node.getName());
+        assertNull(key(node));
+        assertEquals("perm", key(node.getChild("@b")));
+        assertNull(key(node.getChild("@c")));
+        assertSame(node.getChild("@b"), node.getChild("again").getRedirect());
+        assertEquals(Collections.singletonList("perm"), this.createdKeys);
+    }
+
+    @Test
+    public void testRequirementsAreShared() throws IOException {
+        LiteralCommandNode<Object> first = parse("a @perm { b @perm; c @other; }");
+        LiteralCommandNode<Object> second = parse("d { e brigadier:integer @perm; #include shared; }");
+        LiteralCommandNode<Object> third = parse("f { #include shared; }");
+
+        assertNotNull(first.getRequirement());
+        assertSame(first.getRequirement(), first.getChild("b").getRequirement());
+        assertSame(first.getRequirement(), second.getChild("e").getRequirement());
+        assertSame(second.getChild("shared").getRequirement(), third.getChild("shared").getRequirement());
+        assertEquals(3, this.createdKeys.size());
+    }
+
+    @Test
+    public void testValidateDoesNotUseFactory() throws IOException {
+        assertEquals(Collections.emptyList(), this.reader.validate(new StringReader("a @perm { #include shared; }")));
+        assertEquals(Collections.emptyList(), this.createdKeys);
+
+        // the fragment validated above is parsed again, with its requirement
+        assertEquals("commands.shared", key(parse("a { #include shared; }").getChild("shared")));
+    }
+
+    @Test
+    public void testNoFactory() throws IOException {
+        assertEquals(Collections.emptyList(), CommodoreFileReader.INSTANCE.validate(new StringReader("a @perm;")));
+
+        IOException e = assertThrows(IOException.class, () -> CommodoreFileReader.INSTANCE.parse(new StringReader("a @perm;")));
+        assertTrue(e.getMessage(), e.getMessage().contains("no requirement factory has been configured"));
+    }
+
+    @Test
+    public void testWriteNodesNamedLikeRequirements() throws IOException {
+        LiteralCommandNode<Object> node = parse("@a { @b; }");
+
+        StringBuilder written = new StringBuilder();
+        CommodoreFileWriter.INSTANCE.write(node, written);
+        assertEquals("@a {\n  @b;\n}\n", written.toString());
+    }
+
+    private static final class KeyPredicate implements Predicate<Object> {
+        private final String key;
+
+        KeyPredicate(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public boolean test(Object sender) {
+            return true;
+        }
+    }
+}
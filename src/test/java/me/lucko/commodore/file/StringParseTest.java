@@ -0,0 +1,141 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+import com.mojang.brigadier.arguments.ArgumentType;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.tree.CommandNode;
+import com.mojang.brigadier.tree.LiteralCommandNode;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class StringParseTest {
+
+    private static List<String> describe(CommandNode<?> node) {
+        List<String> description = new ArrayList<>();
+        describe(node, "", description);
+        return description;
+    }
+
+    private static void describe(CommandNode<?> node, String prefix, List<String> description) {
+        String path = prefix + node.getName();
+        description.add(path + " " + node.getClass().getSimpleName());
+        for (CommandNode<?> child : node.getChildren()) {
+            describe(child, path + " ", description);
+        }
+    }
+
+    @Test
+    public void testParseFromString() throws IOException {
+        String input = "time { set { day; value brigadier:integer 0; } add -> time set; }";
+        LiteralCommandNode<Object> node = CommodoreFileReader.INSTANCE.parse((CharSequence) input);
+
+        assertEquals(describe(CommodoreFileReader.INSTANCE.parse(new StringReader(input))), describe(node));
+        assertEquals(node.getChild("set"), node.getChild("add").getRedirect());
+    }
+
+    @Test
+    public void testParseFromStringBuilder() throws IOException {
+        LiteralCommandNode<Object> node = CommodoreFileReader.INSTANCE.parse(new StringBuilder("time { day; }"));
+        assertNotNull(node.getChild("day"));
+    }
+
+    @Test
+    public void testParseError() {
+        IOException e = assertThrows(IOException.class, () -> CommodoreFileReader.INSTANCE.parse((CharSequence) "time {\n  set brigadier:nope;\n}"));
+        ParseException cause = (ParseException) e.getCause();
+        assertEquals(2, cause.getLine());
+    }
+
+    @Test
+    public void testBatchErrorNamesDefinition() {
+        List<String> inputs = Arrays.asList("a;", "b;", "c {", "d;");
+        IOException e = assertThrows(IOException.class, () -> CommodoreFileReader.INSTANCE.parse(inputs));
+        ParseException cause = (ParseException) e.getCause();
+        assertTrue(cause.getMessage(), cause.getMessage().startsWith("Unable to parse definition 2: "));
+    }
+
+    @Test
+    public void testReuseAfterError() throws IOException {
+        CommodoreFileReader reader = CommodoreFileReader.builder()
+                .withArgumentTypeParser(BrigadierArgumentTypeParser.INSTANCE)
+                .build();
+
+        assertThrows(IOException.class, () -> reader.parse((CharSequence) "broken { a brigadier:nope;"));
+        assertThrows(IOException.class, () -> reader.parse(Arrays.asList("a;", "b {")));
+
+        // the pooled parser doesn't carry anything over from the failed parses
+        LiteralCommandNode<Object> node = reader.parse((CharSequence) "time { day; }");
+        assertEquals(Arrays.asList("time LiteralCommandNode", "time day LiteralCommandNode"), describe(node));
+        assertEquals(2, reader.parse(Arrays.asList("a;", "b;")).size());
+    }
+
+    @Test
+    public void testReentrantParse() throws IOException {
+        List<LiteralCommandNode<Object>> nested = new ArrayList<>();
+        CommodoreFileReader[] reader = new CommodoreFileReader[1];
+        reader[0] = CommodoreFileReader.builder()
+                .withArgumentTypeParser(BrigadierArgumentTypeParser.INSTANCE)
+                .withArgumentTypeParser(new ArgumentTypeParser() {
+                    @Override
+                    public boolean canParse(String namespace, String name) {
+                        return namespace.equals("test") && name.equals("nested");
+                    }
+
+                    @Override
+                    public ArgumentType<?> parse(String namespace, String name, TokenStream tokenStream) throws ParseException {
+                        // parses another definition on the same thread, part way through the outer one
+                        try {
+                            nested.add(reader[0].parse((CharSequence) "inner { y brigadier:integer; }"));
+                        } catch (IOException e) {
+                            throw tokenStream.createException(e);
+                        }
+                        return IntegerArgumentType.integer();
+                    }
+                })
+                .build();
+
+        LiteralCommandNode<Object> node = reader[0].parse((CharSequence) "outer { x test:nested { z brigadier:integer; } w; }");
+        assertEquals(Arrays.asList(
+                "outer LiteralCommandNode",
+                "outer x ArgumentCommandNode",
+                "outer x z ArgumentCommandNode",
+                "outer w LiteralCommandNode"
+        ), describe(node));
+        assertEquals(Arrays.asList("inner LiteralCommandNode", "inner y ArgumentCommandNode"), describe(nested.get(0)));
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * This file is part of commodore, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.commodore.file;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class ValidationTest {
+    // inputs which end part way through a node definition
+    private static final String[] TRUNCATED_INPUTS = {"", "// c", "foo { #include", "foo { x brigadier:string"};
+
+    private static List<Diagnostic> validate(String input) throws IOException {
+        return CommodoreFileReader.INSTANCE.validate(new StringReader(input));
+    }
+
+    @Test
+    public void testValid() throws IOException {
+        assertTrue(validate("time {\n  set {\n    day;\n  }\n  add -> time set;\n}\n").isEmpty());
+    }
+
+    @Test
+    public void testRecoversAfterBrokenNodes() throws IOException {
+        List<Diagnostic> diagnostics = validate(String.join("\n",
+                "time {",
+                "  set {",
+                "    noon brigadier:nope;",
+                "    value brigadier:integer 0 x;",
+                "    night;",
+                "  }",
+                "  add -> time nowhere;",
+                "}"
+        ));
+
+        assertEquals(diagnostics.toString(), 3, diagnostics.size());
+        assertEquals(3, diagnostics.get(0).getLine());
+        assertEquals(4, diagnostics.get(1).getLine());
+        assertEquals(7, diagnostics.get(2).getLine());
+        assertTrue(diagnostics.get(2).getMessage(), diagnostics.get(2).getMessage().contains("no such node 'nowhere'"));
+    }
+
+    @Test
+    public void testValidatesChildrenOfBrokenNodes() throws IOException {
+        List<Diagnostic> diagnostics = validate(String.join("\n",
+                "time {",
+                "  set brigadier:nope {",
+                "    day brigadier:nope;",
+                "  }",
+                "}"
+        ));
+
+        assertEquals(diagnostics.toString(), 2, diagnostics.size());
+        assertEquals(2, diagnostics.get(0).getLine());
+        assertEquals(3, diagnostics.get(1).getLine());
+    }
+
+    @Test
+    public void testUnexpectedEndOfFile() throws IOException {
+        List<Diagnostic> diagnostics = validate("time {\n  set {\n    day;\n");
+        assertEquals(diagnostics.toString(), 1, diagnostics.size());
+    }
+
+    @Test
+    public void testTrailingInput() throws IOException {
+        List<Diagnostic> diagnostics = validate("time;\n}\nextra brigadier:nope;\n");
+        assertEquals(diagnostics.toString(), 2, diagnostics.size());
+        assertEquals(2, diagnostics.get(0).getLine());
+        assertEquals(3, diagnostics.get(1).getLine());
+    }
+
+    @Test
+    public void testColumns() throws IOException {
+        List<Diagnostic> diagnostics = validate("time {\n  set brigadier:nope;\n}");
+        assertEquals(diagnostics.toString(), 1, diagnostics.size());
+        assertEquals(2, diagnostics.get(0).getLine());
+        assertTrue(diagnostics.get(0).toString(), diagnostics.get(0).getColumn() > 0);
+    }
+
+    @Test
+    public void testTruncatedInput() throws IOException {
+        for (String input : TRUNCATED_INPUTS) {
+            List<Diagnostic> diagnostics = validate(input);
+            assertFalse("'" + input + "'", diagnostics.isEmpty());
+            assertThrows("'" + input + "'", IOException.class, () -> CommodoreFileReader.INSTANCE.parse(new StringReader(input)));
+        }
+    }
+
+    @Test
+    public void testTruncatedFragment() throws IOException {
+        // a fragment may be empty, but the others still end part way through a node
+        for (String input : new String[]{"foo { #include", "foo { x brigadier:string"}) {
+            CommodoreFileReader reader = fragmentReader(input);
+            List<Diagnostic> diagnostics = reader.validate(new StringReader("root { #include fragment; }"));
+            assertFalse("'" + input + "'", diagnostics.isEmpty());
+            for (Diagnostic diagnostic : diagnostics) {
+                assertEquals(diagnostic.toString(), "fragment", diagnostic.getSource());
+            }
+            assertThrows("'" + input + "'", IOException.class, () -> reader.parse(new StringReader("root { #include fragment; }")));
+        }
+    }
+
+    @Test
+    public void testEmptyFragment() throws IOException {
+        for (String input : new String[]{"", "// c"}) {
+            CommodoreFileReader reader = fragmentReader(input);
+            assertEquals("'" + input + "'", Collections.emptyList(), reader.validate(new StringReader("root { #include fragment; }")));
+            assertTrue(reader.parse(new StringReader("root { #include fragment; }")).getChildren().isEmpty());
+        }
+    }
+
+    private static CommodoreFileReader fragmentReader(String fragment) {
+        return CommodoreFileReader.builder()
+                .withArgumentTypeParser(BrigadierArgumentTypeParser.INSTANCE)
+                .withFragmentResolver(name -> new StringReader(fragment))
+                .build();
+    }
+}